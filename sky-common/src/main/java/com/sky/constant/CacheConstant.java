@@ -0,0 +1,28 @@
+package com.sky.constant;
+
+/**
+ * 缓存命名空间常量
+ */
+public class CacheConstant {
+
+    //菜品缓存 按分类id缓存启售菜品及口味
+    public static final String DISH_CACHE = "dish";
+
+    //套餐缓存 按分类id缓存启售套餐
+    public static final String SETMEAL_CACHE = "setmealCache";
+
+    //菜品基本信息 按菜品id缓存,用于加入购物车
+    public static final String DISH_ITEM_CACHE = "dishItem";
+
+    //套餐基本信息 按套餐id缓存,用于加入购物车
+    public static final String SETMEAL_ITEM_CACHE = "setmealItem";
+
+    //套餐包含的菜品 按套餐id缓存
+    public static final String SETMEAL_DISH_CACHE = "setmealDish";
+
+    //分类索引 只用于版本号,分类变更时各节点重建本地索引
+    public static final String CATEGORY_CACHE = "category";
+
+    //完整菜单快照 任意菜品、套餐、分类变更后都需要失效
+    public static final String MENU_CACHE = "menu";
+}
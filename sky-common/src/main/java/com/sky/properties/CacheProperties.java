@@ -0,0 +1,48 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class CacheProperties {
+
+    /**
+     * 本地(L1)菜单缓存的最大条目数
+     */
+    private int localMaxSize = 512;
+
+    /**
+     * 本地(L1)菜单缓存的过期时间,单位秒
+     */
+    private long localTtl = 60;
+
+    /**
+     * redis(L2)菜单缓存的过期时间,单位秒
+     * 命名空间版本号变更后,旧版本的缓存依靠该过期时间淘汰
+     */
+    private long redisTtl = 3600;
+
+    /**
+     * redis缓存剩余时间少于该值(秒)时在后台提前刷新,0表示不提前刷新
+     */
+    private long refreshAhead = 300;
+
+    /**
+     * 空结果(空集合)的缓存时间,单位秒
+     */
+    private long negativeTtl = 60;
+
+    /**
+     * 菜单变更日志保留的最大条数,超出后客户端需要重新获取完整菜单
+     */
+    private int changeLogSize = 1000;
+
+    /**
+     * redis值的序列化方式 compact:二进制json jdk:jdk序列化
+     */
+    private String serializer = "compact";
+
+}
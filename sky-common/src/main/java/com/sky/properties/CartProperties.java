@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class CartProperties {
+
+    /**
+     * 购物车存储方式 redis:保存在redis中,异步写回数据库 mysql:直接读写数据库
+     */
+    private String store = "redis";
+
+    /**
+     * redis购物车的过期时间,单位秒,每次修改后重新计时
+     */
+    private long ttl = 86400;
+
+    /**
+     * 是否把redis购物车异步写回数据库
+     */
+    private boolean persist = true;
+
+    /**
+     * 写回数据库的间隔,单位毫秒
+     */
+    private long flushInterval = 5000;
+
+    /**
+     * 每次写回的最大用户数
+     */
+    private int flushBatch = 100;
+
+}
@@ -0,0 +1,52 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.image")
+@Data
+public class ImageProperties {
+
+    /**
+     * 缩略图最长边的像素
+     */
+    private int thumbSize = 160;
+
+    /**
+     * 列表图最长边的像素
+     */
+    private int listSize = 480;
+
+    /**
+     * jpeg压缩质量 0~1
+     */
+    private float quality = 0.8f;
+
+    /**
+     * 生成图片的后台线程数
+     */
+    private int workers = 2;
+
+    /**
+     * 等待生成的图片数量上限,超出时不再生成,客户端继续使用原图
+     */
+    private int queueSize = 64;
+
+    /**
+     * 本地图片缓存目录
+     */
+    private String cacheDir = "./image-cache";
+
+    /**
+     * 本地图片缓存占用磁盘的上限,单位字节
+     */
+    private long cacheMaxBytes = 512L * 1024 * 1024;
+
+    /**
+     * 淘汰的缓存图片延迟删除的时间,单位毫秒;sendfile在请求处理完成后才按路径打开文件
+     */
+    private long cacheDeleteDelay = 60000;
+
+}
@@ -0,0 +1,47 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 从redis同步各状态订单数量到本地的间隔,单位毫秒
+     */
+    private long statusSyncInterval = 1000;
+
+    /**
+     * 各状态订单数量与数据库对账的间隔,单位毫秒
+     */
+    private long reconcileInterval = 300000;
+
+    /**
+     * 待支付订单的超时时间,单位分钟,超时后自动取消
+     */
+    private long paymentTimeout = 15;
+
+    /**
+     * 派送中订单的超时时间,单位分钟,从开始派送时计时,超时后自动完成
+     */
+    private long deliveryTimeout = 60;
+
+    /**
+     * 扫描超时订单的间隔,单位毫秒
+     */
+    private long sweepInterval = 60000;
+
+    /**
+     * 每批处理的订单数
+     */
+    private int sweepChunkSize = 500;
+
+    /**
+     * 每次扫描最多处理的批数,剩余的订单留到下次扫描
+     */
+    private int sweepMaxChunks = 100;
+
+}
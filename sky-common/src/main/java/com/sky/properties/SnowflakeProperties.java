@@ -0,0 +1,28 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.snowflake")
+@Data
+public class SnowflakeProperties {
+
+    /**
+     * 当前节点的id(0~1023),多个节点不能重复
+     * 不配置时启动时从redis中租用
+     */
+    private Long nodeId;
+
+    /**
+     * 节点id租约的过期时间(毫秒),节点停止续期超过这个时间后节点id才能被其他节点使用
+     */
+    private long leaseTtl = 60000;
+
+    /**
+     * 节点id租约的续期间隔(毫秒),需要明显小于过期时间
+     */
+    private long leaseRenewInterval = 20000;
+
+}
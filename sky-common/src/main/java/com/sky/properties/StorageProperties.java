@@ -0,0 +1,32 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.storage")
+@Data
+public class StorageProperties {
+
+    /**
+     * 文件存储方式 gcs:谷歌云存储 local:本地磁盘
+     */
+    private String type = "gcs";
+
+    /**
+     * 本地存储的文件目录
+     */
+    private String localPath = "./upload";
+
+    /**
+     * 本地存储的文件访问路径前缀
+     */
+    private String urlPrefix = "/img/";
+
+    /**
+     * 使用gcs时是否经由应用的本地图片缓存访问文件,为true时上传返回url-prefix开头的访问路径
+     */
+    private boolean proxy = false;
+
+}
@@ -0,0 +1,35 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    /**
+     * 每个连接待发送消息的最大条数,超出后认为客户端消费过慢并断开连接
+     */
+    private int queueSize = 256;
+
+    /**
+     * 单条消息异步发送的超时时间,单位毫秒,超时后断开连接
+     */
+    private long sendTimeLimit = 10000;
+
+    /**
+     * 跨节点广播的发布间隔,单位毫秒,间隔内的消息合并成一条redis消息
+     */
+    private long flushInterval = 50;
+
+    /**
+     * 允许建立连接的来源,支持通配符,例如 https://*.example.com;为空时只允许同源连接
+     */
+    private List<String> allowedOriginPatterns = new ArrayList<>();
+
+}
@@ -19,4 +19,11 @@ public class PageResult implements Serializable {
 
     private List records; //当前页数据集合
 
+    private String nextCursor; //下一页游标,游标分页时返回,为null表示没有更多数据
+
+    public PageResult(long total, List records) {
+        this.total = total;
+        this.records = records;
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.sky.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * 文件存储,具体使用GCS还是本地磁盘由配置sky.storage.type决定
+ */
+public interface FileStorage {
+
+    /**
+     * 以流的方式上传文件,不会把整个文件读入内存
+     *
+     * @param in          文件内容,由调用方负责关闭
+     * @param size        文件大小,未知时传-1
+     * @param contentType 文件类型,可以为null
+     * @param objectName  对象名称
+     * @return 文件访问路径
+     * @throws IOException
+     */
+    String upload(InputStream in, long size, String contentType, String objectName) throws IOException;
+
+    /**
+     * 上传字节数组
+     *
+     * @param bytes
+     * @param objectName
+     * @return 文件访问路径
+     * @throws IOException
+     */
+    default String upload(byte[] bytes, String objectName) throws IOException {
+        return upload(new ByteArrayInputStream(bytes), bytes.length, null, objectName);
+    }
+
+    /**
+     * 下载文件到本地路径
+     *
+     * @param objectName 对象名称
+     * @param target     目标文件,已存在时覆盖
+     * @throws java.nio.file.NoSuchFileException 文件不存在
+     * @throws IOException
+     */
+    void download(String objectName, Path target) throws IOException;
+}
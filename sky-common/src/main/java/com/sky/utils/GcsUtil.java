@@ -2,62 +2,114 @@ package com.sky.utils;
 
 import com.google.cloud.storage.*;
 import com.sky.properties.GcsProperties;  // 引入 GcsProperties 類
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 
-@Data
-@AllArgsConstructor
+@Getter
 @Slf4j
-@Component
-public class GcsUtil {
+public class GcsUtil implements FileStorage {
+
+    //上传时每次发送的分块大小,GCS可续传上传要求为256KB的整数倍;每次上传都会分配一块该大小的缓冲区,
+    //菜品图片通常只有几百KB,取最小值避免大缓冲区带来的堆内存压力
+    private static final int UPLOAD_BUFFER_SIZE = 256 * 1024;
 
     private final String endpoint;
     private final String bucketName;
+    // 文件訪問路徑前綴,為null時直接返回 GCS 的公開地址
+    private final String urlPrefix;
+
+    // GCS 客戶端是綫程安全的,整個應用共用一個,第一次上傳時創建
+    private volatile Storage storage;
+
+    public GcsUtil(String endpoint, String bucketName) {
+        this(endpoint, bucketName, null);
+    }
+
+    public GcsUtil(String endpoint, String bucketName, String urlPrefix) {
+        this.endpoint = endpoint;
+        this.bucketName = bucketName;
+        this.urlPrefix = urlPrefix == null || urlPrefix.endsWith("/") ? urlPrefix : urlPrefix + "/";
+    }
 
-    // 如果需要通過 GcsProperties 自動注入配置，您可以在構造函數中傳入 GcsProperties
-    @Autowired
     public GcsUtil(GcsProperties gcsProperties) {
-        this.endpoint = gcsProperties.getEndpoint();
-        this.bucketName = gcsProperties.getBucketName();
+        this(gcsProperties.getEndpoint(), gcsProperties.getBucketName());
     }
 
     /**
      * 文件上傳
+     * 使用可續傳上傳直接從輸入流按塊寫入 GCS
      *
-     * @param bytes
+     * @param in
+     * @param size
+     * @param contentType
      * @param objectName
      * @return
      */
-    public String upload(byte[] bytes, String objectName) {
-        // 使用 GCS 客戶端
-        Storage storage = StorageOptions.newBuilder().setProjectId(bucketName).build().getService();
-
+    @Override
+    public String upload(InputStream in, long size, String contentType, String objectName) throws IOException {
         try {
             BlobId blobId = BlobId.of(bucketName, objectName);
 
             // 創建 Blob 信息（GCS 的對象）
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
+            BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
+                    .setContentType(contentType)
+                    .build();
 
             // 將文件內容上傳到 GCS
-            Blob blob = storage.create(blobInfo, new ByteArrayInputStream(bytes));
+            getStorage().createFrom(blobInfo, in, UPLOAD_BUFFER_SIZE);
 
-            // 文件訪問路徑規則：gs://bucket-name/object-name
-            String fileUrl = String.format("https://storage.googleapis.com/%s/%s", bucketName, objectName);
+            // 文件訪問路徑規則：gs://bucket-name/object-name,配置了訪問路徑前綴時經由應用的圖片緩存訪問
+            String fileUrl = urlPrefix != null ? urlPrefix + objectName
+                    : String.format("https://storage.googleapis.com/%s/%s", bucketName, objectName);
 
             log.info("文件已上傳到: {}", fileUrl);
 
             return fileUrl;
-        } catch (Exception e) {
-            // 打印錯誤詳細信息
+        } catch (StorageException e) {
             log.error("文件上傳到 GCS 時發生錯誤，存儲桶: {}, 文件名: {}", bucketName, objectName, e);
-            e.printStackTrace();
-            return null;
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 文件下載
+     *
+     * @param objectName
+     * @param target
+     */
+    @Override
+    public void download(String objectName, Path target) throws IOException {
+        try {
+            getStorage().downloadTo(BlobId.of(bucketName, objectName), target);
+        } catch (StorageException e) {
+            if (e.getCode() == 404) {
+                throw new NoSuchFileException(objectName);
+            }
+            log.error("從 GCS 下載文件時發生錯誤，存儲桶: {}, 文件名: {}", bucketName, objectName, e);
+            throw new IOException(e);
         }
     }
-}
 
+    /**
+     * 獲取 GCS 客戶端,整個應用只創建一次
+     * @return
+     */
+    public Storage getStorage() {
+        Storage s = storage;
+        if (s == null) {
+            synchronized (this) {
+                s = storage;
+                if (s == null) {
+                    s = StorageOptions.newBuilder().setProjectId(bucketName).build().getService();
+                    storage = s;
+                }
+            }
+        }
+        return s;
+    }
+}
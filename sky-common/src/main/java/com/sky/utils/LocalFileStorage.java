@@ -0,0 +1,79 @@
+package com.sky.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 本地磁盘文件存储,用于开发环境和离线压测,替代GCS
+ */
+@Getter
+@Slf4j
+public class LocalFileStorage implements FileStorage {
+
+    //文件存放目录
+    private final Path baseDir;
+    //文件访问路径前缀
+    private final String urlPrefix;
+
+    public LocalFileStorage(String baseDir, String urlPrefix) {
+        this.baseDir = Paths.get(baseDir).toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix.endsWith("/") ? urlPrefix : urlPrefix + "/";
+    }
+
+    /**
+     * 文件上传,先写入临时文件再改名,其他线程不会读到写了一半的文件
+     *
+     * @param in
+     * @param size
+     * @param contentType
+     * @param objectName
+     * @return
+     */
+    @Override
+    public String upload(InputStream in, long size, String contentType, String objectName) throws IOException {
+        Path target = resolve(objectName);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        String fileUrl = urlPrefix + objectName;
+        log.info("文件已保存到: {}, 访问路径: {}", target, fileUrl);
+        return fileUrl;
+    }
+
+    /**
+     * 文件下载
+     *
+     * @param objectName
+     * @param target
+     */
+    @Override
+    public void download(String objectName, Path target) throws IOException {
+        Path source = resolve(objectName);
+        if (!Files.isRegularFile(source)) {
+            throw new NoSuchFileException(objectName);
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path resolve(String objectName) throws IOException {
+        Path path = baseDir.resolve(objectName).normalize();
+        if (!path.startsWith(baseDir)) {
+            throw new IOException("非法的文件名: " + objectName);
+        }
+        return path;
+    }
+}
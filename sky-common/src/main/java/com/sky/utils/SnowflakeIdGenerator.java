@@ -0,0 +1,99 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花算法id生成器
+ * 41位毫秒时间戳 + 10位节点id + 12位序列号,单节点每毫秒最多生成4096个id
+ * 时间戳和序列号打包在一个AtomicLong中,通过CAS更新,不需要加锁;
+ * 节点id是租用的时带有效期限,超过期限后停止生成id,直到重新设置节点id
+ */
+public class SnowflakeIdGenerator {
+
+    //起始时间 2024-01-01 00:00:00 UTC
+    public static final long EPOCH = 1704067200000L;
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    //当前节点id及有效期限,一次读取保证两者一致
+    private volatile Node node;
+
+    //毫秒时钟
+    private final LongSupplier clock;
+
+    //高位为上次使用的时间戳,低12位为序列号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        this.clock = clock;
+        setNode(nodeId, Long.MAX_VALUE);
+    }
+
+    /**
+     * 设置节点id及其有效期限,租约续期或重新租用节点id时调用
+     *
+     * @param nodeId
+     * @param deadline 有效期限(毫秒时间戳),到达后nextId抛出异常
+     */
+    public void setNode(long nodeId, long deadline) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点id必须在0到" + MAX_NODE_ID + "之间: " + nodeId);
+        }
+        this.node = new Node(nodeId, deadline);
+    }
+
+    /**
+     * 生成下一个id
+     * 时钟回拨或同一毫秒序列号用尽时不等待,继续沿用上次的时间戳并向后借用,保证id单调递增且不重复,
+     * 系统时钟追上之后自然恢复
+     * @return
+     * @throws IllegalStateException 节点id已超过有效期限,可能已被其他节点使用
+     */
+    public long nextId() {
+        Node current = node;
+        while (true) {
+            long millis = clock.getAsLong();
+            if (millis >= current.deadline) {
+                throw new IllegalStateException("订单号生成器节点id " + current.id + " 的租约已失效,暂停生成id");
+            }
+            long now = millis - EPOCH;
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (current.id << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public long getNodeId() {
+        return node.id;
+    }
+
+    private static final class Node {
+
+        private final long id;
+        private final long deadline;
+
+        private Node(long id, long deadline) {
+            this.id = id;
+            this.deadline = deadline;
+        }
+    }
+}
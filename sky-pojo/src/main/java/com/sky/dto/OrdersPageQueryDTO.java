@@ -27,4 +27,10 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //游标分页时上一页返回的nextCursor,为空时查询第一页
+    private String cursor;
+
+    //是否接受缓存的近似总数,默认第一页返回精确总数、之后的页返回近似总数
+    private Boolean approximateTotal;
+
 }
@@ -93,6 +93,9 @@ public class Orders implements Serializable {
     //预计送达时间
     private LocalDateTime estimatedDeliveryTime;
 
+    //开始派送时间
+    private LocalDateTime deliveryStartTime;
+
     //配送状态  1立即送出  0选择具体时间
     private Integer deliveryStatus;
 
@@ -26,6 +26,10 @@ public class DishVO implements Serializable {
     private BigDecimal price;
     //图片
     private String image;
+    //缩略图
+    private String thumbImage;
+    //列表图
+    private String listImage;
     //描述信息
     private String description;
     //0 停售 1 起售
@@ -0,0 +1,45 @@
+package com.sky.vo;
+
+import com.sky.entity.Category;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 增量菜单,只包含某个版本之后新增、修改和删除的数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuChangesVO implements Serializable {
+
+    //当前菜单版本号,下次请求时作为since参数
+    private Long version;
+
+    //增量结果恒为false
+    @Builder.Default
+    private Boolean full = false;
+
+    //新增或修改的分类
+    private List<Category> categories;
+
+    //新增或修改的菜品及口味
+    private List<DishVO> dishes;
+
+    //新增或修改的套餐
+    private List<SetmealVO> setmeals;
+
+    //被删除或禁用的分类id
+    private List<Long> removedCategoryIds;
+
+    //被删除或停售的菜品id
+    private List<Long> removedDishIds;
+
+    //被删除或停售的套餐id
+    private List<Long> removedSetmealIds;
+}
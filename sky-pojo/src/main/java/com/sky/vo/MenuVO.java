@@ -0,0 +1,37 @@
+package com.sky.vo;
+
+import com.sky.entity.Category;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 完整菜单快照
+ * 字段与增量菜单MenuChangesVO保持一致,客户端可以用同一套逻辑处理两种返回
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuVO implements Serializable {
+
+    //快照对应的菜单版本号,下次请求增量菜单时作为since参数
+    private Long version;
+
+    //完整快照恒为true
+    @Builder.Default
+    private Boolean full = true;
+
+    //启用的分类
+    private List<Category> categories;
+
+    //启售的菜品及口味
+    private List<DishVO> dishes;
+
+    //启售的套餐
+    private List<SetmealVO> setmeals;
+}
@@ -37,6 +37,12 @@ public class SetmealVO implements Serializable {
     //图片
     private String image;
 
+    //缩略图
+    private String thumbImage;
+
+    //列表图
+    private String listImage;
+
     //更新时间
     private LocalDateTime updateTime;
 
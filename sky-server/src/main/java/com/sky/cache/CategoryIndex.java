@@ -0,0 +1,80 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不可变的分类索引
+ * 按id索引全部分类,按类型索引已启用的分类,列表顺序与数据库查询一致(sort升序,创建时间降序)
+ * 分类变更时整体重建后替换引用,读取时无需加锁
+ */
+public class CategoryIndex {
+
+    //构建索引时分类命名空间的版本号
+    private final long version;
+
+    private final Map<Long, Category> byId;
+    private final List<Category> enabled;
+    private final Map<Integer, List<Category>> enabledByType;
+
+    private CategoryIndex(long version, Map<Long, Category> byId, List<Category> enabled,
+                          Map<Integer, List<Category>> enabledByType) {
+        this.version = version;
+        this.byId = byId;
+        this.enabled = enabled;
+        this.enabledByType = enabledByType;
+    }
+
+    /**
+     * 根据已排好序的全部分类构建索引
+     * @param categories
+     * @param version
+     * @return
+     */
+    public static CategoryIndex build(List<Category> categories, long version) {
+        Map<Long, Category> byId = new HashMap<>();
+        List<Category> enabled = new ArrayList<>();
+        Map<Integer, List<Category>> enabledByType = new HashMap<>();
+        for (Category category : categories) {
+            byId.put(category.getId(), category);
+            if (StatusConstant.ENABLE.equals(category.getStatus())) {
+                enabled.add(category);
+                enabledByType.computeIfAbsent(category.getType(), type -> new ArrayList<>()).add(category);
+            }
+        }
+        enabledByType.replaceAll((type, list) -> Collections.unmodifiableList(list));
+        return new CategoryIndex(version, Collections.unmodifiableMap(byId),
+                Collections.unmodifiableList(enabled), Collections.unmodifiableMap(enabledByType));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 根据id查询分类,不存在时返回null
+     * @param id
+     * @return
+     */
+    public Category getById(Long id) {
+        return byId.get(id);
+    }
+
+    /**
+     * 根据类型查询已启用的分类,type为null时返回全部已启用的分类
+     * @param type
+     * @return
+     */
+    public List<Category> list(Integer type) {
+        if (type == null) {
+            return enabled;
+        }
+        return enabledByType.getOrDefault(type, Collections.emptyList());
+    }
+}
@@ -0,0 +1,71 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * redis值的紧凑序列化器,基于二进制json(Smile)
+ * 字段按名称匹配,新增或删除字段都不影响已缓存数据的读取
+ * 读取时如果发现是旧的jdk序列化数据,则交给jdk序列化器处理,方便平滑切换
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    //jdk序列化数据的魔数 0xACED
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    private final ObjectMapper objectMapper;
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    public CompactRedisSerializer() {
+        //只允许项目自身的类型和常用的jdk类型参与多态反序列化
+        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.math.")
+                .allowIfSubType("java.time.")
+                .build();
+
+        objectMapper = new ObjectMapper(new SmileFactory());
+        objectMapper.registerModule(new JavaTimeModule());
+        //收到未知属性时不报异常
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        //写入类型信息,读取时还原成原来的对象类型
+        objectMapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("无法序列化缓存数据: " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return jdkSerializer.deserialize(bytes);
+        }
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (Exception e) {
+            throw new SerializationException("无法反序列化缓存数据", e);
+        }
+    }
+}
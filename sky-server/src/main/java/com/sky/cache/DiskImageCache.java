@@ -0,0 +1,251 @@
+package com.sky.cache;
+
+import com.sky.properties.ImageProperties;
+import com.sky.utils.FileStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘图片缓存,按占用字节数做LRU淘汰
+ * 未命中时从文件存储下载,同一个文件的并发请求只下载一次;
+ * 淘汰的文件延迟一段时间再删除,交给sendfile按路径发送的文件在发送开始前不会被删掉
+ */
+@Component
+@Slf4j
+public class DiskImageCache {
+
+    //打开文件时最多重新获取的次数
+    private static final int OPEN_ATTEMPTS = 3;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long deleteDelay;
+
+    //文件名 -> 文件大小,按访问顺序排列,最久未访问的在前
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    //已淘汰等待删除的文件 -> 淘汰时间
+    private final Map<String, Long> evicted = new LinkedHashMap<>();
+
+    //正在下载中的文件
+    private final Map<String, CompletableFuture<Path>> loading = new ConcurrentHashMap<>();
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    public DiskImageCache(ImageProperties imageProperties) throws IOException {
+        this.dir = Paths.get(imageProperties.getCacheDir()).toAbsolutePath().normalize();
+        this.maxBytes = imageProperties.getCacheMaxBytes();
+        this.deleteDelay = imageProperties.getCacheDeleteDelay();
+        Files.createDirectories(dir);
+        scan();
+    }
+
+    /**
+     * 获取文件在本地缓存中的路径,未命中时从文件存储下载
+     * @param name 文件名,调用方需保证不包含路径分隔符
+     * @return
+     * @throws java.nio.file.NoSuchFileException 文件存储中不存在该文件
+     * @throws IOException
+     */
+    public Path get(String name) throws IOException {
+        Path path = dir.resolve(name);
+        synchronized (this) {
+            if (entries.get(name) != null) {
+                return path;
+            }
+        }
+
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = loading.putIfAbsent(name, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            future.complete(download(name, path));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            loading.remove(name, future);
+        }
+        return join(future);
+    }
+
+    /**
+     * 打开缓存中的文件
+     * 在缓存锁内打开文件通道,打开后即使文件被淘汰删除,已打开的通道仍然可以读取完整内容;
+     * 获取路径后、打开前文件被淘汰时重新获取
+     * @param name 文件名,调用方需保证不包含路径分隔符
+     * @return
+     * @throws java.nio.file.NoSuchFileException 文件存储中不存在该文件
+     * @throws IOException
+     */
+    public CachedFile open(String name) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Path path = get(name);
+            synchronized (this) {
+                if (entries.get(name) != null) {
+                    try {
+                        long lastModified = Files.getLastModifiedTime(path).toMillis();
+                        return new CachedFile(path, FileChannel.open(path, StandardOpenOption.READ), lastModified);
+                    } catch (NoSuchFileException e) {
+                        //文件被外部删除,移出缓存后重新下载
+                        Long size = entries.remove(name);
+                        totalBytes -= size == null ? 0 : size;
+                    }
+                }
+            }
+            if (attempt >= OPEN_ATTEMPTS) {
+                throw new IOException("缓存图片被反复淘汰,无法打开:" + name);
+            }
+            log.debug("缓存图片在打开前被淘汰,重新获取:{}", name);
+        }
+    }
+
+    private Path download(String name, Path path) throws IOException {
+        Path tmp = Files.createTempFile(dir, ".download-", ".tmp");
+        try {
+            fileStorage.download(name, tmp);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        add(name, Files.size(path));
+        log.info("图片已缓存到本地:{}", name);
+        return path;
+    }
+
+    private Path join(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 加入新文件,超出容量时从最久未访问的文件开始淘汰,新加入的文件不会被淘汰
+     */
+    private synchronized void add(String name, long size) {
+        Long old = entries.put(name, size);
+        evicted.remove(name);
+        totalBytes += size - (old == null ? 0 : old);
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        long now = System.currentTimeMillis();
+        while (totalBytes > maxBytes && entries.size() > 1) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            evicted.put(eldest.getKey(), now);
+        }
+    }
+
+    /**
+     * 定时删除淘汰时间超过延迟的文件,删除前重新加入缓存的文件不删除
+     */
+    @Scheduled(fixedDelayString = "${sky.image.cache-delete-delay:60000}")
+    public synchronized void purge() {
+        long deadline = System.currentTimeMillis() - deleteDelay;
+        Iterator<Map.Entry<String, Long>> iterator = evicted.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() > deadline) {
+                break;
+            }
+            iterator.remove();
+            try {
+                Files.deleteIfExists(dir.resolve(entry.getKey()));
+            } catch (IOException e) {
+                log.warn("删除缓存图片失败:{}", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 启动时加载目录中已有的文件,按修改时间排列近似访问顺序,并清理上次残留的临时文件
+     */
+    private void scan() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.startsWith(".download-")) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            add(name, Files.size(file));
+        }
+        log.info("本地图片缓存:{}个文件,{}字节", entries.size(), totalBytes);
+    }
+
+    /**
+     * 已打开的缓存文件
+     */
+    public static class CachedFile implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final long lastModified;
+
+        private CachedFile(Path path, FileChannel channel, long lastModified) {
+            this.path = path;
+            this.channel = channel;
+            this.lastModified = lastModified;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
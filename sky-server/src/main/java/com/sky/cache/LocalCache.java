@@ -0,0 +1,117 @@
+package com.sky.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内缓存,带容量上限和过期时间
+ * 读操作无锁,只有写入超过容量时才会扫描淘汰最早过期的条目
+ */
+public class LocalCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, Entry> map = new ConcurrentHashMap<>();
+
+    public LocalCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取缓存,不存在或已过期时返回null
+     * @param key
+     * @return
+     */
+    public Object get(String key) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            map.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存
+     * @param key
+     * @param value
+     */
+    public void put(String key, Object value) {
+        put(key, value, ttlMillis);
+    }
+
+    /**
+     * 写入缓存并指定过期时间,过期时间不超过缓存默认的过期时间
+     * @param key
+     * @param value
+     * @param ttlMillis
+     */
+    public void put(String key, Object value, long ttlMillis) {
+        map.put(key, new Entry(value, System.currentTimeMillis() + Math.min(ttlMillis, this.ttlMillis)));
+        if (map.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * 删除缓存
+     * @param key
+     */
+    public void remove(String key) {
+        map.remove(key);
+    }
+
+    /**
+     * 删除所有以prefix开头的缓存
+     * @param prefix
+     */
+    public void removeByPrefix(String prefix) {
+        map.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * 先淘汰已过期的条目,仍然超出容量时淘汰最早过期的条目
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        map.values().removeIf(entry -> entry.expireAt < now);
+        while (map.size() > maxSize) {
+            String eldestKey = null;
+            long eldestExpireAt = Long.MAX_VALUE;
+            Iterator<Map.Entry<String, Entry>> iterator = map.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> e = iterator.next();
+                if (e.getValue().expireAt < eldestExpireAt) {
+                    eldestExpireAt = e.getValue().expireAt;
+                    eldestKey = e.getKey();
+                }
+            }
+            if (eldestKey == null) {
+                return;
+            }
+            map.remove(eldestKey);
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.sky.cache;
+
+import com.sky.properties.CacheProperties;
+import com.sky.result.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 菜单两级缓存: 进程内L1 + redis L2
+ * 读取时先查本地缓存,未命中再查redis,redis也未命中时由调用方查询数据库后写入
+ *
+ * 缓存key按命名空间划分,格式为 命名空间:v版本号:id
+ * 整个命名空间失效时只需对版本号做一次INCR,旧版本的key不再被访问,由过期时间自然淘汰,
+ * 不再使用KEYS扫描整个redis
+ * 管理端修改数据后通过redis发布订阅通知所有节点更新版本号并清除本地缓存
+ */
+@Component
+@Slf4j
+public class MenuCache implements MessageListener {
+
+    //本地缓存失效通知的频道
+    public static final String INVALIDATE_CHANNEL = "sky:menu:invalidate";
+
+    //命名空间版本号在redis中的key前缀
+    private static final String VERSION_KEY_PREFIX = "sky:menu:ns:";
+
+    //失效消息前缀 K表示单个key V表示命名空间版本号变更
+    private static final String KEY_MESSAGE = "K|";
+    private static final String VERSION_MESSAGE = "V|";
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final LocalCache localCache;
+
+    //本地缓存的命名空间版本号,过期后重新从redis读取,防止漏收通知
+    private final Map<String, NamespaceVersion> versions = new ConcurrentHashMap<>();
+
+    //正在加载中的key,用于合并并发加载
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    //提前刷新使用的后台线程池,队列有界,满了直接放弃本次刷新
+    private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(1, 2, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(64), runnable -> {
+                Thread thread = new Thread(runnable, "menu-cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+    private final long localTtlMillis;
+    private final long redisTtl;
+    private final long refreshAhead;
+    private final long negativeTtl;
+
+    @Autowired
+    public MenuCache(CacheProperties cacheProperties) {
+        this.localTtlMillis = cacheProperties.getLocalTtl() * 1000;
+        this.redisTtl = cacheProperties.getRedisTtl();
+        this.refreshAhead = cacheProperties.getRefreshAhead();
+        this.negativeTtl = cacheProperties.getNegativeTtl();
+        this.localCache = new LocalCache(cacheProperties.getLocalMaxSize(), localTtlMillis);
+    }
+
+    /**
+     * 查询缓存,L1未命中时查询redis并回填L1
+     * @param namespace
+     * @param id
+     * @return
+     */
+    public Object get(String namespace, Object id) {
+        String key = createKey(namespace, id);
+        Object value = localCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = redisTemplate.opsForValue().get(key);
+        if (value != null) {
+            localCache.put(key, value, ttlOf(value) * 1000);
+        }
+        return value;
+    }
+
+    /**
+     * 查询缓存,两级缓存都未命中时调用loader加载并写入缓存
+     * 同一个key同时只有一个线程执行loader,其他线程等待它的结果,避免缓存失效瞬间大量请求打到数据库
+     * redis中的缓存即将过期时,在后台提前刷新
+     *
+     * @param namespace
+     * @param id
+     * @param loader
+     * @return
+     */
+    public Object get(String namespace, Object id, Supplier<?> loader) {
+        String key = createKey(namespace, id);
+        Object value = localCache.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = redisTemplate.opsForValue().get(key);
+        if (value != null) {
+            localCache.put(key, value, ttlOf(value) * 1000);
+            //空结果本身就是短期缓存,不需要提前刷新
+            if (!isEmpty(value)) {
+                refreshIfExpiring(key, loader);
+            }
+            return value;
+        }
+        return load(key, loader, false);
+    }
+
+    /**
+     * 批量查询缓存,本地缓存未命中的id用一次multiGet查询redis,
+     * redis也未命中的id交给loader一次性加载并写入缓存
+     * loader应为每个传入的id返回结果(不存在时返回空集合),这样不存在的id也会被短期缓存
+     *
+     * @param namespace
+     * @param ids
+     * @param loader
+     * @return 按传入id顺序排列的结果
+     */
+    public <K> Map<K, Object> getAll(String namespace, Collection<K> ids, Function<List<K>, Map<K, ?>> loader) {
+        Map<K, Object> found = new HashMap<>();
+        List<K> redisIds = new ArrayList<>();
+        List<String> redisKeys = new ArrayList<>();
+        for (K id : ids) {
+            String key = createKey(namespace, id);
+            Object value = localCache.get(key);
+            if (value != null) {
+                found.put(id, value);
+            } else {
+                redisIds.add(id);
+                redisKeys.add(key);
+            }
+        }
+
+        if (!redisIds.isEmpty()) {
+            List<Object> values = redisTemplate.opsForValue().multiGet(redisKeys);
+            List<K> missIds = new ArrayList<>();
+            for (int i = 0; i < redisIds.size(); i++) {
+                Object value = values == null ? null : values.get(i);
+                if (value != null) {
+                    localCache.put(redisKeys.get(i), value, ttlOf(value) * 1000);
+                    found.put(redisIds.get(i), value);
+                } else {
+                    missIds.add(redisIds.get(i));
+                }
+            }
+
+            if (!missIds.isEmpty()) {
+                Map<K, ?> loaded = loader.apply(missIds);
+                for (K id : missIds) {
+                    Object value = loaded.get(id);
+                    if (value != null) {
+                        write(createKey(namespace, id), value);
+                        found.put(id, value);
+                    }
+                }
+            }
+        }
+
+        Map<K, Object> result = new LinkedHashMap<>();
+        for (K id : ids) {
+            if (found.containsKey(id)) {
+                result.put(id, found.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写入缓存,同时写入redis和本地缓存
+     * @param namespace
+     * @param id
+     * @param value
+     */
+    public void put(String namespace, Object id, Object value) {
+        String key = createKey(namespace, id);
+        write(key, value);
+    }
+
+    /**
+     * 清除单个id的缓存,并通知其他节点清除本地缓存
+     * @param namespace
+     * @param id
+     */
+    public void evict(String namespace, Object id) {
+        String key = createKey(namespace, id);
+        redisTemplate.delete(key);
+        localCache.remove(key);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, KEY_MESSAGE + key);
+    }
+
+    /**
+     * 在当前事务提交后再清除缓存,避免事务提交前其他请求把旧数据重新写入缓存
+     * 没有事务时立即清除
+     * @param namespace
+     * @param id
+     */
+    public void evictAfterCommit(String namespace, Object id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(namespace, id);
+                }
+            });
+        } else {
+            evict(namespace, id);
+        }
+    }
+
+    /**
+     * 使整个命名空间的缓存失效: 版本号原子加一,并通知其他节点
+     * @param namespace
+     */
+    public void evictNamespace(String namespace) {
+        Long version = stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + namespace);
+        updateVersion(namespace, version);
+        stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, VERSION_MESSAGE + namespace + "|" + version);
+    }
+
+    /**
+     * 获取命名空间当前的版本号
+     * @param namespace
+     * @return
+     */
+    public long version(String namespace) {
+        return currentVersion(namespace);
+    }
+
+    /**
+     * 接收其他节点发出的失效通知,只处理本节点的本地缓存
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("收到菜单缓存失效通知:{}", body);
+        if (body.startsWith(KEY_MESSAGE)) {
+            localCache.remove(body.substring(KEY_MESSAGE.length()));
+        } else if (body.startsWith(VERSION_MESSAGE)) {
+            String[] parts = body.substring(VERSION_MESSAGE.length()).split("\\|");
+            updateVersion(parts[0], Long.valueOf(parts[1]));
+        } else {
+            versions.clear();
+            localCache.clear();
+        }
+    }
+
+    /**
+     * 合并同一个key的并发加载,只有第一个线程真正执行loader
+     * @param key
+     * @param loader
+     * @param refresh 是否为提前刷新,提前刷新时本地缓存中的旧值不作数
+     * @return
+     */
+    private Object load(String key, Supplier<?> loader, boolean refresh) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            //已经有线程在加载,等待它的结果
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            //上一个加载线程可能刚刚完成,先检查本地缓存
+            Object value = refresh ? null : localCache.get(key);
+            if (value == null) {
+                value = loader.get();
+                if (value != null) {
+                    write(key, value);
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * redis中的缓存剩余时间不足时,在后台线程提前重新加载
+     * @param key
+     * @param loader
+     */
+    private void refreshIfExpiring(String key, Supplier<?> loader) {
+        if (refreshAhead <= 0 || loading.containsKey(key)) {
+            return;
+        }
+        Long expire = redisTemplate.getExpire(key, TimeUnit.SECONDS);
+        if (expire == null || expire < 0 || expire > refreshAhead) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader, true);
+                } catch (Exception e) {
+                    log.warn("提前刷新菜单缓存失败:{}", key, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("刷新任务已满,跳过提前刷新:{}", key);
+        }
+    }
+
+    /**
+     * 写入redis和本地缓存,空结果只缓存较短的时间
+     * 这样不存在的分类或没有启售菜品的分类不会每次都查询数据库,新增数据后也能很快生效
+     * @param key
+     * @param value
+     */
+    private void write(String key, Object value) {
+        long ttl = ttlOf(value);
+        redisTemplate.opsForValue().set(key, value, ttl, TimeUnit.SECONDS);
+        localCache.put(key, value, ttl * 1000);
+    }
+
+    /**
+     * 缓存值对应的redis过期时间,单位秒
+     * @param value
+     * @return
+     */
+    private long ttlOf(Object value) {
+        return isEmpty(value) ? negativeTtl : redisTtl;
+    }
+
+    /**
+     * 判断缓存值是否为空结果: 空集合,或者data为空集合的Result
+     * @param value
+     * @return
+     */
+    private boolean isEmpty(Object value) {
+        if (value instanceof Result) {
+            value = ((Result<?>) value).getData();
+        }
+        return value instanceof Collection && ((Collection<?>) value).isEmpty();
+    }
+
+    /**
+     * 构造带版本号的缓存key
+     * @param namespace
+     * @param id
+     * @return
+     */
+    private String createKey(String namespace, Object id) {
+        return namespace + ":v" + currentVersion(namespace) + ":" + id;
+    }
+
+    /**
+     * 获取命名空间当前的版本号,本地没有或已过期时从redis读取
+     * @param namespace
+     * @return
+     */
+    private long currentVersion(String namespace) {
+        NamespaceVersion nv = versions.get(namespace);
+        if (nv != null && nv.expireAt >= System.currentTimeMillis()) {
+            return nv.version;
+        }
+        String value = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + namespace);
+        long version = value == null ? 0L : Long.parseLong(value);
+        versions.put(namespace, new NamespaceVersion(version, System.currentTimeMillis() + localTtlMillis));
+        return version;
+    }
+
+    /**
+     * 更新本地的版本号,并清除旧版本的本地缓存
+     * @param namespace
+     * @param version
+     */
+    private void updateVersion(String namespace, Long version) {
+        versions.merge(namespace, new NamespaceVersion(version, System.currentTimeMillis() + localTtlMillis),
+                (oldValue, newValue) -> newValue.version >= oldValue.version ? newValue : oldValue);
+        localCache.removeByPrefix(namespace + ":");
+    }
+
+    private static class NamespaceVersion {
+        private final long version;
+        private final long expireAt;
+
+        private NamespaceVersion(long version, long expireAt) {
+            this.version = version;
+            this.expireAt = expireAt;
+        }
+    }
+}
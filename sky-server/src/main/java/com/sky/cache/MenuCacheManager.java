@@ -0,0 +1,97 @@
+package com.sky.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于MenuCache的CacheManager,让@Cacheable/@CacheEvict注解的缓存同样走两级缓存
+ * 缓存名即为命名空间,allEntries清除时只需要增加命名空间的版本号
+ */
+public class MenuCacheManager implements CacheManager {
+
+    private final MenuCache menuCache;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public MenuCacheManager(MenuCache menuCache) {
+        this.menuCache = menuCache;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> new TwoLevelCache(n, menuCache));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 单个缓存名对应的两级缓存
+     */
+    static class TwoLevelCache extends AbstractValueAdaptingCache {
+
+        private final String name;
+        private final MenuCache menuCache;
+
+        TwoLevelCache(String name, MenuCache menuCache) {
+            //null不写入缓存,缓存值统一由redis值序列化器处理
+            super(false);
+            this.name = name;
+            this.menuCache = menuCache;
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            return menuCache.get(name, key);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return menuCache;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            //@Cacheable(sync = true)时走这里,同一个key只有一个线程执行valueLoader
+            return (T) menuCache.get(name, key, () -> {
+                try {
+                    return valueLoader.call();
+                } catch (Exception e) {
+                    throw new ValueRetrievalException(key, valueLoader, e);
+                }
+            });
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            if (value == null) {
+                return;
+            }
+            menuCache.put(name, key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            menuCache.evict(name, key);
+        }
+
+        @Override
+        public void clear() {
+            menuCache.evictNamespace(name);
+        }
+    }
+}
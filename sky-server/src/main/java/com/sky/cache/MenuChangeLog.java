@@ -0,0 +1,217 @@
+package com.sky.cache;
+
+import com.sky.properties.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 菜单变更日志
+ * 每次菜品、套餐、分类的写操作都会让全局的菜单版本号加一,并记录本次变更的类型和id
+ * 日志保存在redis的有序集合中(分数为版本号),只保留最近的若干条,所有节点读取同一份日志
+ */
+@Component
+@Slf4j
+public class MenuChangeLog {
+
+    //变更类型
+    public static final String TYPE_DISH = "dish";
+    public static final String TYPE_SETMEAL = "setmeal";
+    public static final String TYPE_CATEGORY = "category";
+
+    //菜单版本号
+    private static final String VERSION_KEY = "sky:menu:catalog:version";
+    //变更日志
+    private static final String LOG_KEY = "sky:menu:catalog:changes";
+
+    //版本号加一、写入日志、裁剪日志在一个脚本中原子完成
+    private static final DefaultRedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('INCR', KEYS[1]) " +
+            "redis.call('ZADD', KEYS[2], v, v .. '|' .. ARGV[1]) " +
+            "redis.call('ZREMRANGEBYRANK', KEYS[2], 0, -(tonumber(ARGV[2]) + 1)) " +
+            "return v", Long.class);
+
+    //清空日志并让版本号加一,之后所有旧版本的增量查询都会拿到完整菜单
+    private static final DefaultRedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[2]) " +
+            "return redis.call('INCR', KEYS[1])", Long.class);
+
+    //记录变更的最大尝试次数
+    private static final int WRITE_ATTEMPTS = 3;
+
+    //记录失败后还没能成功清空日志
+    private volatile boolean resetPending;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final int maxSize;
+
+    @Autowired
+    public MenuChangeLog(CacheProperties cacheProperties) {
+        this.maxSize = cacheProperties.getChangeLogSize();
+    }
+
+    /**
+     * 记录一次变更,存在事务时在事务提交后记录
+     * @param type
+     * @param id
+     */
+    public void record(String type, Long id) {
+        record(type, Collections.singletonList(id));
+    }
+
+    /**
+     * 记录一次变更,存在事务时在事务提交后记录
+     * @param type
+     * @param ids
+     */
+    public void record(String type, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        String change = type + "|" + ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write(change);
+                }
+            });
+        } else {
+            write(change);
+        }
+    }
+
+    /**
+     * 获取当前的菜单版本号
+     * @return
+     */
+    public long currentVersion() {
+        String value = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    /**
+     * 查询某个版本之后的所有变更
+     * @param since
+     * @return 日志已不包含since之后的全部变更时返回null
+     */
+    public List<Change> since(long since) {
+        Set<String> first = stringRedisTemplate.opsForZSet().range(LOG_KEY, 0, 0);
+        if (first == null || first.isEmpty()) {
+            return null;
+        }
+        //日志中最早的版本必须紧接着since,否则中间的变更已被裁剪
+        Change earliest = Change.parse(first.iterator().next());
+        if (earliest.getVersion() > since + 1) {
+            return null;
+        }
+        Set<String> entries = stringRedisTemplate.opsForZSet().rangeByScore(LOG_KEY, since + 1, Double.POSITIVE_INFINITY);
+        List<Change> changes = new ArrayList<>();
+        if (entries != null) {
+            for (String entry : entries) {
+                changes.add(Change.parse(entry));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 写入一条变更,失败时重试;重试仍失败时清空日志并让版本号加一,
+     * 否则版本号没有增加,客户端和搜索索引会一直认为这次变更不存在
+     * @param change
+     */
+    private void write(String change) {
+        for (int attempt = 1; attempt <= WRITE_ATTEMPTS; attempt++) {
+            try {
+                if (resetPending) {
+                    reset();
+                }
+                stringRedisTemplate.execute(RECORD_SCRIPT, Arrays.asList(VERSION_KEY, LOG_KEY), change, String.valueOf(maxSize));
+                return;
+            } catch (RuntimeException e) {
+                log.warn("记录菜单变更失败,第{}次:{}", attempt, change, e);
+            }
+        }
+        try {
+            reset();
+        } catch (RuntimeException e) {
+            //redis恢复后由定时任务或下一次记录变更时清空日志
+            resetPending = true;
+            log.error("记录菜单变更失败且无法清空变更日志:{}", change, e);
+        }
+    }
+
+    /**
+     * 记录失败后定时重试清空日志
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void retryReset() {
+        if (!resetPending) {
+            return;
+        }
+        try {
+            reset();
+        } catch (RuntimeException e) {
+            log.warn("清空菜单变更日志失败", e);
+        }
+    }
+
+    /**
+     * 清空日志并让版本号加一,since()对所有旧版本都返回null,客户端和搜索索引会重新获取完整菜单
+     */
+    private void reset() {
+        Long version = stringRedisTemplate.execute(RESET_SCRIPT, Arrays.asList(VERSION_KEY, LOG_KEY));
+        resetPending = false;
+        log.warn("菜单变更日志已清空,当前版本:{}", version);
+    }
+
+    /**
+     * 一条变更记录 格式为 版本号|类型|id1,id2
+     */
+    public static class Change {
+        private final long version;
+        private final String type;
+        private final List<Long> ids;
+
+        private Change(long version, String type, List<Long> ids) {
+            this.version = version;
+            this.type = type;
+            this.ids = ids;
+        }
+
+        static Change parse(String entry) {
+            String[] parts = entry.split("\\|");
+            List<Long> ids = Arrays.stream(parts[2].split(","))
+                    .map(Long::valueOf)
+                    .collect(Collectors.toList());
+            return new Change(Long.parseLong(parts[0]), parts[1], ids);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.sky.cache;
+
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 管理端菜品、套餐、分类名称搜索的本地索引
+ * 写操作都会记录到菜单变更日志,搜索前根据日志把本节点索引追到最新版本:
+ * 只重新加载发生变更的记录,日志不连续时整体重建
+ */
+@Component
+@Slf4j
+public class MenuSearchIndex {
+
+    @Autowired
+    private MenuChangeLog menuChangeLog;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+
+    private final NGramIndex dishIndex = new NGramIndex();
+    private final NGramIndex setmealIndex = new NGramIndex();
+    private final NGramIndex categoryIndex = new NGramIndex();
+
+    //索引已经应用到的菜单版本号,-1表示尚未构建
+    private long version = -1;
+
+    /**
+     * 搜索菜品
+     * @param name
+     * @param categoryId
+     * @param status
+     * @return 按相关度排序的菜品id,索引不可用时返回null
+     */
+    public List<Long> searchDishes(String name, Long categoryId, Integer status) {
+        return sync() ? dishIndex.search(name, categoryId, status) : null;
+    }
+
+    /**
+     * 搜索套餐
+     * @param name
+     * @param categoryId
+     * @param status
+     * @return 按相关度排序的套餐id,索引不可用时返回null
+     */
+    public List<Long> searchSetmeals(String name, Long categoryId, Integer status) {
+        return sync() ? setmealIndex.search(name, categoryId, status) : null;
+    }
+
+    /**
+     * 搜索分类
+     * @param name
+     * @param type
+     * @return 按相关度排序的分类id,索引不可用时返回null
+     */
+    public List<Long> searchCategories(String name, Integer type) {
+        return sync() ? categoryIndex.search(name, type == null ? null : type.longValue(), null) : null;
+    }
+
+    /**
+     * 从排好序的id中截取一页
+     * @param ids
+     * @param page 从1开始
+     * @param pageSize
+     * @return
+     */
+    public static List<Long> page(List<Long> ids, int page, int pageSize) {
+        int from = (int) Math.min((long) Math.max(page - 1, 0) * Math.max(pageSize, 0), ids.size());
+        int to = (int) Math.min((long) from + Math.max(pageSize, 0), ids.size());
+        return ids.subList(from, to);
+    }
+
+    /**
+     * 把按id查出的记录恢复成ids的顺序
+     * @param rows
+     * @param ids
+     * @param idOf
+     * @return
+     */
+    public static <T> List<T> orderByIds(List<T> rows, List<Long> ids, Function<T, Long> idOf) {
+        if (rows.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, T> byId = rows.stream().collect(Collectors.toMap(idOf, row -> row, (a, b) -> a));
+        List<T> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T row = byId.get(id);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把索引追到当前的菜单版本
+     * @return 索引是否可用
+     */
+    private synchronized boolean sync() {
+        try {
+            long current = menuChangeLog.currentVersion();
+            if (version >= 0 && current == version) {
+                return true;
+            }
+            List<MenuChangeLog.Change> changes = version < 0 || current < version ? null : menuChangeLog.since(version);
+            if (changes == null) {
+                rebuild();
+            } else {
+                apply(changes);
+                for (MenuChangeLog.Change change : changes) {
+                    current = Math.max(current, change.getVersion());
+                }
+            }
+            version = current;
+            return true;
+        } catch (Exception e) {
+            log.error("同步菜单搜索索引失败", e);
+            version = -1;
+            return false;
+        }
+    }
+
+    private void rebuild() {
+        log.info("重建菜单搜索索引...");
+        dishIndex.clear();
+        for (Dish dish : dishMapper.list(new Dish())) {
+            dishIndex.put(dish.getId(), dish.getName(), dish.getCategoryId(), dish.getStatus());
+        }
+        setmealIndex.clear();
+        for (Setmeal setmeal : setmealMapper.list(new Setmeal())) {
+            setmealIndex.put(setmeal.getId(), setmeal.getName(), setmeal.getCategoryId(), setmeal.getStatus());
+        }
+        rebuildCategories();
+    }
+
+    private void rebuildCategories() {
+        categoryIndex.clear();
+        for (Category category : categoryMapper.listAll()) {
+            categoryIndex.put(category.getId(), category.getName(), category.getType().longValue(), category.getStatus());
+        }
+    }
+
+    /**
+     * 重新加载发生变更的记录,查不到的从索引中删除
+     */
+    private void apply(List<MenuChangeLog.Change> changes) {
+        Set<Long> dishIds = new LinkedHashSet<>();
+        Set<Long> setmealIds = new LinkedHashSet<>();
+        boolean categoryChanged = false;
+        for (MenuChangeLog.Change change : changes) {
+            switch (change.getType()) {
+                case MenuChangeLog.TYPE_DISH:
+                    dishIds.addAll(change.getIds());
+                    break;
+                case MenuChangeLog.TYPE_SETMEAL:
+                    setmealIds.addAll(change.getIds());
+                    break;
+                case MenuChangeLog.TYPE_CATEGORY:
+                    categoryChanged = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (!dishIds.isEmpty()) {
+            Set<Long> missing = new HashSet<>(dishIds);
+            for (Dish dish : dishMapper.selectByIds(new ArrayList<>(dishIds))) {
+                dishIndex.put(dish.getId(), dish.getName(), dish.getCategoryId(), dish.getStatus());
+                missing.remove(dish.getId());
+            }
+            missing.forEach(dishIndex::remove);
+        }
+        if (!setmealIds.isEmpty()) {
+            Set<Long> missing = new HashSet<>(setmealIds);
+            for (Setmeal setmeal : setmealMapper.selectByIds(new ArrayList<>(setmealIds))) {
+                setmealIndex.put(setmeal.getId(), setmeal.getName(), setmeal.getCategoryId(), setmeal.getStatus());
+                missing.remove(setmeal.getId());
+            }
+            missing.forEach(setmealIndex::remove);
+        }
+        //分类数量很少,直接整体重建
+        if (categoryChanged) {
+            rebuildCategories();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 预先编码好的菜单快照
+ * 同一菜单版本只编码一次,保存json原文和gzip压缩后的字节,以及对应的强ETag
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String etag;
+
+    private byte[] json;
+
+    private byte[] gzip;
+}
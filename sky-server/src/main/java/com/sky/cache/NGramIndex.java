@@ -0,0 +1,197 @@
+package com.sky.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 名称的n-gram倒排索引
+ * 中文没有空格分词,名称按单字和相邻两字切分,任意长度的子串查询都能通过倒排表求交集得到候选,
+ * 再用包含判断剔除误命中,结果与like '%name%'一致(忽略大小写)
+ */
+public class NGramIndex {
+
+    //id -> 文档
+    private final Map<Long, Doc> docs = new HashMap<>();
+    //gram -> id集合
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 写入或替换一条记录
+     * @param id
+     * @param name
+     * @param group 用于过滤的分组,菜品和套餐为分类id,分类为分类类型
+     * @param status
+     */
+    public void put(Long id, String name, Long group, Integer status) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            String normalized = normalize(name);
+            docs.put(id, new Doc(id, normalized, group, status));
+            for (String gram : grams(normalized)) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除一条记录
+     * @param id
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按名称搜索,返回按相关度排序的id
+     * 完全相同 > 前缀匹配 > 包含,同一档内匹配位置越靠前、名称越短越靠前,最后按id倒序(新建的在前)
+     * @param query
+     * @param group 为null时不过滤
+     * @param status 为null时不过滤
+     * @return
+     */
+    public List<Long> search(String query, Long group, Integer status) {
+        String q = normalize(query);
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = candidates(q);
+            List<Doc> matched = new ArrayList<>();
+            for (Long id : candidates) {
+                Doc doc = docs.get(id);
+                if ((group != null && !group.equals(doc.group)) || (status != null && !status.equals(doc.status))) {
+                    continue;
+                }
+                if (doc.name.contains(q)) {
+                    matched.add(doc);
+                }
+            }
+            matched.sort(Comparator.<Doc>comparingInt(doc -> doc.name.equals(q) ? 0 : doc.name.startsWith(q) ? 1 : 2)
+                    .thenComparingInt(doc -> doc.name.indexOf(q))
+                    .thenComparingInt(doc -> doc.name.length())
+                    .thenComparing(doc -> doc.id, Comparator.reverseOrder()));
+            List<Long> ids = new ArrayList<>(matched.size());
+            for (Doc doc : matched) {
+                ids.add(doc.id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 对查询的所有gram的倒排表求交集,从最短的倒排表开始
+     */
+    private Set<Long> candidates(String q) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : queryGrams(q)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return new HashSet<>();
+            }
+            lists.add(ids);
+        }
+        if (lists.isEmpty()) {
+            return new HashSet<>(docs.keySet());
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private void removeInternal(Long id) {
+        Doc old = docs.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String gram : grams(old.name)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 索引时的切分:每个字符以及每两个相邻字符
+     */
+    private static Set<String> grams(String s) {
+        Set<String> grams = new HashSet<>();
+        int[] cps = s.codePoints().toArray();
+        for (int i = 0; i < cps.length; i++) {
+            grams.add(new String(cps, i, 1));
+            if (i + 1 < cps.length) {
+                grams.add(new String(cps, i, 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 查询时的切分:单个字符直接查单字,否则只用相邻两字,倒排表更短
+     */
+    private static Set<String> queryGrams(String q) {
+        int[] cps = q.codePoints().toArray();
+        Set<String> grams = new HashSet<>();
+        if (cps.length == 1) {
+            grams.add(q);
+            return grams;
+        }
+        for (int i = 0; i + 1 < cps.length; i++) {
+            grams.add(new String(cps, i, 2));
+        }
+        return grams;
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.toLowerCase();
+    }
+
+    private static class Doc {
+        private final Long id;
+        private final String name;
+        private final Long group;
+        private final Integer status;
+
+        private Doc(Long id, String name, Long group, Integer status) {
+            this.id = id;
+            this.name = name;
+            this.group = group;
+            this.status = status;
+        }
+    }
+}
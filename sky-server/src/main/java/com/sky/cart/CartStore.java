@@ -0,0 +1,46 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+/**
+ * 购物车存储
+ * 同一用户、菜品、套餐、口味的商品只保存一条,通过数量累加
+ */
+public interface CartStore {
+
+    /**
+     * 加入一件商品
+     * @param userId
+     * @param item 商品信息,数量忽略
+     */
+    void add(Long userId, ShoppingCart item);
+
+    /**
+     * 按商品自身的数量批量加入
+     * @param userId
+     * @param items
+     */
+    void addAll(Long userId, List<ShoppingCart> items);
+
+    /**
+     * 减少一件商品,数量为0时删除
+     * @param userId
+     * @param item 只使用菜品id、套餐id、口味
+     */
+    void sub(Long userId, ShoppingCart item);
+
+    /**
+     * 查询用户的购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 清空用户的购物车
+     * @param userId
+     */
+    void clean(Long userId);
+}
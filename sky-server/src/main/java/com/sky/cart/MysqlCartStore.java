@@ -0,0 +1,89 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * 直接读写数据库的购物车
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "store", havingValue = "mysql")
+public class MysqlCartStore implements CartStore {
+
+    //减少商品数量时的最大尝试次数
+    private static final int MAX_SUB_ATTEMPTS = 2;
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    /**
+     * 启动时检查购物车商品唯一索引,缺少时upsert无法合并同一件商品,直接启动失败
+     */
+    @PostConstruct
+    public void checkItemKey() {
+        if (shoppingCartMapper.countItemKeyColumns() == 0) {
+            throw new IllegalStateException(
+                    "shopping_cart缺少唯一索引uk_shopping_cart_item,请先执行db/shopping_cart_item_key.sql");
+        }
+    }
+
+    /**
+     * 加入一件商品,通过一条upsert语句完成插入或数量加一,连续点击不会产生重复的商品
+     * @param userId
+     * @param item
+     */
+    @Override
+    public void add(Long userId, ShoppingCart item) {
+        item.setUserId(userId);
+        item.setNumber(1);
+        shoppingCartMapper.upsert(item);
+    }
+
+    /**
+     * 按商品自身的数量批量加入
+     * @param userId
+     * @param items
+     */
+    @Override
+    public void addAll(Long userId, List<ShoppingCart> items) {
+        for (ShoppingCart item : items) {
+            item.setUserId(userId);
+            shoppingCartMapper.upsert(item);
+        }
+    }
+
+    /**
+     * 减少一件商品
+     * 数量大于1时条件减一,否则条件删除;两条语句之间数量被并发加一导致都未命中时再试一次
+     * @param userId
+     * @param item
+     */
+    @Override
+    public void sub(Long userId, ShoppingCart item) {
+        item.setUserId(userId);
+        for (int i = 0; i < MAX_SUB_ATTEMPTS; i++) {
+            if (shoppingCartMapper.decrement(item) > 0 || shoppingCartMapper.deleteLast(item) > 0) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<ShoppingCart> list(Long userId) {
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .userId(userId)
+                .build();
+        return shoppingCartMapper.list(shoppingCart);
+    }
+
+    @Override
+    public void clean(Long userId) {
+        shoppingCartMapper.deleteAll(userId);
+    }
+}
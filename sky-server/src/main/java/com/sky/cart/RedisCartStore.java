@@ -0,0 +1,349 @@
+package com.sky.cart;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sky.entity.ShoppingCart;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保存在redis中的购物车
+ * 每个用户一个hash,商品信息和数量分两个字段保存,数量通过HINCRBY原子增减,每次修改后重新设置过期时间;
+ * 开启持久化时修改过的用户记录在一个有序集合中(分数为需要写回的时间),由定时任务批量写回数据库;
+ * hash中始终带有一个已加载标记字段,购物车为空时hash也存在;hash不存在(从未加载、已过期或redis数据丢失)时
+ * 先从数据库加载,写回时也跳过hash不存在的用户,不会删除数据库中还未加载的购物车
+ */
+@Component
+@ConditionalOnProperty(prefix = "sky.cart", name = "store", havingValue = "redis", matchIfMissing = true)
+@Slf4j
+public class RedisCartStore implements CartStore {
+
+    private static final String CART_KEY = "sky:cart:";
+    //需要写回数据库的用户id
+    private static final String DIRTY_KEY = "sky:cart:dirty";
+    //商品信息字段前缀
+    private static final String INFO = "i:";
+    //商品数量字段前缀
+    private static final String NUMBER = "n:";
+    //写回失败后重试的延迟,单位毫秒
+    private static final long RETRY_DELAY = 30000;
+    //购物车未加载时脚本的返回值
+    private static final long NOT_LOADED = -2;
+
+    //KEYS: 购物车, 待写回集合 ARGV: 过期时间, 用户id, 当前时间, 是否持久化, 之后每三个一组: 商品, 商品信息, 数量
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -2 end " +
+            "for i = 5, #ARGV, 3 do " +
+            "  redis.call('HSETNX', KEYS[1], 'i:' .. ARGV[i], ARGV[i + 1]) " +
+            "  redis.call('HINCRBY', KEYS[1], 'n:' .. ARGV[i], ARGV[i + 2]) " +
+            "end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "if ARGV[4] == '1' then redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2]) end " +
+            "return 1", Long.class);
+
+    //KEYS: 购物车, 待写回集合 ARGV: 过期时间, 用户id, 当前时间, 是否持久化, 商品
+    private static final DefaultRedisScript<Long> SUB_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -2 end " +
+            "if redis.call('HEXISTS', KEYS[1], 'n:' .. ARGV[5]) == 0 then return -1 end " +
+            "local n = redis.call('HINCRBY', KEYS[1], 'n:' .. ARGV[5], -1) " +
+            "if n <= 0 then redis.call('HDEL', KEYS[1], 'n:' .. ARGV[5], 'i:' .. ARGV[5]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "if ARGV[4] == '1' then redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2]) end " +
+            "return n", Long.class);
+
+    //KEYS: 购物车 ARGV: 过期时间, 之后每两个一组: 字段, 值 写入已加载标记loaded,已经被其他请求加载时不覆盖
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('HSET', KEYS[1], 'loaded', '1') " +
+            "for i = 2, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    //KEYS: 购物车, 待写回集合 ARGV: 过期时间, 用户id, 当前时间, 是否持久化 清空后保留已加载标记
+    private static final DefaultRedisScript<Long> CLEAN_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], 'loaded', '1') " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "if ARGV[4] == '1' then redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2]) end " +
+            "return 1", Long.class);
+
+    //取出并删除已经到期的待写回用户,多个节点同时执行时各自取到不同的用户
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local m = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #m > 0 then redis.call('ZREM', KEYS[1], unpack(m)) end " +
+            "return m", List.class);
+
+    //与消息转换器使用同样的对象映射器,保证日期等字段的格式一致
+    private final JacksonObjectMapper objectMapper = new JacksonObjectMapper();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CartProperties cartProperties;
+
+    /**
+     * 加入一件商品
+     * @param userId
+     * @param item
+     */
+    @Override
+    public void add(Long userId, ShoppingCart item) {
+        item.setNumber(1);
+        addAll(userId, Collections.singletonList(item));
+    }
+
+    /**
+     * 按商品自身的数量批量加入,所有商品在一个脚本中原子完成
+     * @param userId
+     * @param items
+     */
+    @Override
+    public void addAll(Long userId, List<ShoppingCart> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        List<String> args = baseArgs(userId);
+        for (ShoppingCart item : items) {
+            args.add(itemKey(item));
+            args.add(encode(item));
+            args.add(String.valueOf(item.getNumber() == null ? 1 : item.getNumber()));
+        }
+        execute(ADD_SCRIPT, userId, args);
+    }
+
+    /**
+     * 减少一件商品
+     * @param userId
+     * @param item
+     */
+    @Override
+    public void sub(Long userId, ShoppingCart item) {
+        List<String> args = baseArgs(userId);
+        args.add(itemKey(item));
+        execute(SUB_SCRIPT, userId, args);
+    }
+
+    /**
+     * 执行修改购物车的脚本,购物车还未加载时先从数据库加载再执行
+     * @param script
+     * @param userId
+     * @param args
+     */
+    private void execute(DefaultRedisScript<Long> script, Long userId, List<String> args) {
+        List<String> keys = Arrays.asList(CART_KEY + userId, DIRTY_KEY);
+        Long result = stringRedisTemplate.execute(script, keys, args.toArray());
+        if (result != null && result == NOT_LOADED) {
+            load(userId);
+            stringRedisTemplate.execute(script, keys, args.toArray());
+        }
+    }
+
+    /**
+     * 从数据库加载用户的购物车,购物车为空时也写入已加载标记,避免每次请求都查询数据库
+     * @param userId
+     */
+    private void load(Long userId) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(cartProperties.getTtl()));
+        if (cartProperties.isPersist()) {
+            ShoppingCart query = ShoppingCart.builder()
+                    .userId(userId)
+                    .build();
+            for (ShoppingCart item : shoppingCartMapper.list(query)) {
+                String key = itemKey(item);
+                args.add(INFO + key);
+                args.add(encode(item));
+                args.add(NUMBER + key);
+                args.add(String.valueOf(item.getNumber()));
+            }
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(CART_KEY + userId), args.toArray());
+    }
+
+    /**
+     * 查询用户的购物车,按加入时间排序
+     * @param userId
+     * @return
+     */
+    @Override
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CART_KEY + userId);
+        if (entries.isEmpty()) {
+            load(userId);
+            entries = stringRedisTemplate.opsForHash().entries(CART_KEY + userId);
+        }
+        return toList(userId, entries);
+    }
+
+    /**
+     * 把购物车hash转换成商品列表,按加入时间排序
+     * @param userId
+     * @param entries
+     * @return
+     */
+    private List<ShoppingCart> toList(Long userId, Map<Object, Object> entries) {
+        List<ShoppingCart> list = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = entry.getKey().toString();
+            if (!field.startsWith(INFO)) {
+                continue;
+            }
+            Object number = entries.get(NUMBER + field.substring(INFO.length()));
+            if (number == null) {
+                continue;
+            }
+            ShoppingCart item = decode(entry.getValue().toString());
+            item.setUserId(userId);
+            item.setNumber(Integer.valueOf(number.toString()));
+            list.add(item);
+        }
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
+
+    /**
+     * 清空用户的购物车,存在事务时在事务提交后清空
+     * @param userId
+     */
+    @Override
+    public void clean(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doClean(userId);
+                }
+            });
+        } else {
+            doClean(userId);
+        }
+    }
+
+    private void doClean(Long userId) {
+        stringRedisTemplate.execute(CLEAN_SCRIPT, Arrays.asList(CART_KEY + userId, DIRTY_KEY), baseArgs(userId).toArray());
+    }
+
+    /**
+     * 把修改过的购物车写回数据库
+     */
+    @Scheduled(fixedDelayString = "${sky.cart.flush-interval:5000}")
+    public void flush() {
+        if (!cartProperties.isPersist()) {
+            return;
+        }
+        try {
+            while (true) {
+                List<?> userIds = stringRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(DIRTY_KEY),
+                        String.valueOf(System.currentTimeMillis()), String.valueOf(cartProperties.getFlushBatch()));
+                if (userIds == null || userIds.isEmpty()) {
+                    return;
+                }
+                for (Object userId : userIds) {
+                    persist(Long.valueOf(userId.toString()));
+                }
+                if (userIds.size() < cartProperties.getFlushBatch()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("购物车写回数据库失败", e);
+        }
+    }
+
+    /**
+     * 用redis中的购物车覆盖数据库中的数据
+     * redis中的购物车已经不存在(过期或数据丢失)时不修改数据库,下次访问时会重新从数据库加载
+     * @param userId
+     */
+    private void persist(Long userId) {
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CART_KEY + userId);
+            if (entries.isEmpty()) {
+                log.warn("用户{}的购物车在写回前已不存在,保留数据库中的数据", userId);
+                return;
+            }
+            List<ShoppingCart> items = toList(userId, entries);
+            transactionTemplate.executeWithoutResult(status -> {
+                shoppingCartMapper.deleteAll(userId);
+                if (!items.isEmpty()) {
+                    shoppingCartMapper.insertBatch(items);
+                }
+            });
+        } catch (Exception e) {
+            log.error("用户{}的购物车写回数据库失败,稍后重试", userId, e);
+            stringRedisTemplate.opsForZSet().addIfAbsent(DIRTY_KEY, userId.toString(), System.currentTimeMillis() + RETRY_DELAY);
+        }
+    }
+
+    private List<String> baseArgs(Long userId) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(cartProperties.getTtl()));
+        args.add(userId.toString());
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(cartProperties.isPersist() ? "1" : "0");
+        return args;
+    }
+
+    /**
+     * 商品在hash中的字段名 菜品id|套餐id|口味
+     */
+    private String itemKey(ShoppingCart item) {
+        return (item.getDishId() == null ? "" : item.getDishId().toString()) + "|"
+                + (item.getSetmealId() == null ? "" : item.getSetmealId().toString()) + "|"
+                + (item.getDishFlavor() == null ? "" : item.getDishFlavor());
+    }
+
+    /**
+     * 商品信息不包含id、用户id和数量
+     */
+    private String encode(ShoppingCart item) {
+        ShoppingCart info = ShoppingCart.builder()
+                .name(item.getName())
+                .image(item.getImage())
+                .dishId(item.getDishId())
+                .setmealId(item.getSetmealId())
+                .dishFlavor(item.getDishFlavor())
+                .amount(item.getAmount())
+                .createTime(item.getCreateTime() == null ? LocalDateTime.now() : item.getCreateTime())
+                .build();
+        try {
+            return objectMapper.writeValueAsString(info);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("购物车商品编码失败", e);
+        }
+    }
+
+    private ShoppingCart decode(String json) {
+        try {
+            return objectMapper.readValue(json, ShoppingCart.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("购物车商品解码失败", e);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.sky.config;
 
 import com.sky.properties.GcsProperties;
+import com.sky.properties.StorageProperties;
+import com.sky.utils.FileStorage;
 import com.sky.utils.GcsUtil;
+import com.sky.utils.LocalFileStorage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
- * 配置類，用於創建Gcs對象
+ * 配置類，用於創建文件存儲對象
  */
 @Configuration
 @Slf4j
@@ -16,9 +19,14 @@ public class GcsConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public GcsUtil gusUtil(GcsProperties gcsProperties){
+    public FileStorage fileStorage(StorageProperties storageProperties, GcsProperties gcsProperties){
+        if ("local".equalsIgnoreCase(storageProperties.getType())) {
+            log.info("開始創建本地文件存儲對象: {}", storageProperties);
+            return new LocalFileStorage(storageProperties.getLocalPath(), storageProperties.getUrlPrefix());
+        }
         log.info("開始創建google雲文件上傳工具類對象: {}",gcsProperties);
         return new GcsUtil(gcsProperties.getEndpoint(),
-                gcsProperties.getBucketName());
+                gcsProperties.getBucketName(),
+                storageProperties.isProxy() ? storageProperties.getUrlPrefix() : null);
     }
 }
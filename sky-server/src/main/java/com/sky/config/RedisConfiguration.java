@@ -1,11 +1,19 @@
 package com.sky.config;
 
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuCacheManager;
+import com.sky.properties.CacheProperties;
+import com.sky.websocket.WebSocketBus;
 import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.units.qual.Temperature;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -13,17 +21,54 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 public class RedisConfiguration {
 
     @Bean
-    public  RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory){
+    public  RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory, CacheProperties cacheProperties){
         log.info("開始創建redis模板對象...");
         RedisTemplate redisTemplate = new RedisTemplate();
         //设置redis的连接工厂对象
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         //设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        //设置redis value的序列化器,默认使用紧凑的二进制json,配置为jdk时沿用jdk序列化
+        if (!"jdk".equals(cacheProperties.getSerializer())) {
+            CompactRedisSerializer valueSerializer = new CompactRedisSerializer();
+            redisTemplate.setValueSerializer(valueSerializer);
+            redisTemplate.setHashValueSerializer(valueSerializer);
+        }
 
         return redisTemplate;
     }
 
+    /**
+     * redis消息监听容器,用于接收菜单缓存失效通知和跨节点的WebSocket广播
+     * @param redisConnectionFactory
+     * @param menuCache
+     * @param webSocketBus
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       MenuCache menuCache,
+                                                                       WebSocketBus webSocketBus) {
+        log.info("開始創建redis消息監聽容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(menuCache, new ChannelTopic(MenuCache.INVALIDATE_CHANNEL));
+        container.addMessageListener(webSocketBus, new ChannelTopic(WebSocketBus.CHANNEL));
+        return container;
+    }
+
+    /**
+     * 让spring cache注解同样使用本地+redis两级缓存
+     * @param menuCache
+     * @return
+     */
+    @Bean
+    public CacheManager cacheManager(MenuCache menuCache) {
+        log.info("開始創建兩級緩存管理器...");
+        return new MenuCacheManager(menuCache);
+    }
+
 
 
 }
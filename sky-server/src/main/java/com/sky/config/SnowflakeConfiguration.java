@@ -0,0 +1,137 @@
+package com.sky.config;
+
+import com.sky.properties.SnowflakeProperties;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置類，用於創建訂單號生成器
+ * 未配置节点id时从redis中租用一个空闲的节点id: 每个节点id对应一个带过期时间的key,用SET NX占用,
+ * 运行期间定时续期,停止时释放;没有空闲的节点id时启动失败,不会与仍在运行的节点共用同一个节点id;
+ * 生成器只在最近一次续期成功后的过期时间内生成id,租约被其他节点占用时立即暂停并重新租用一个空闲的节点id
+ */
+@Configuration
+@Slf4j
+public class SnowflakeConfiguration {
+
+    //节点id计数器,只用于决定从哪个节点id开始尝试占用,减少同时启动的实例之间的冲突
+    private static final String NODE_COUNTER_KEY = "sky:snowflake:node";
+    //节点id租约 sky:snowflake:node:{节点id} -> 持有者标识
+    private static final String NODE_LEASE_KEY_PREFIX = "sky:snowflake:node:";
+
+    //KEYS: 租约 ARGV: 持有者标识, 过期时间(毫秒) 仍由自己持有时续期,已过期时重新占用,被其他节点占用时返回0
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('GET', KEYS[1]) " +
+            "if owner == ARGV[1] then redis.call('PEXPIRE', KEYS[1], ARGV[2]) return 1 end " +
+            "if not owner then redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) return 1 end " +
+            "return 0", Long.class);
+
+    //只释放自己持有的租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    private final String token = UUID.randomUUID().toString();
+
+    //租用的节点id,使用配置的节点id时为null
+    private volatile Long leasedNodeId;
+
+    private SnowflakeIdGenerator generator;
+
+    @Autowired
+    private SnowflakeProperties snowflakeProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator() {
+        Long nodeId = snowflakeProperties.getNodeId();
+        if (nodeId != null) {
+            log.info("開始創建訂單號生成器,節點id: {}", nodeId);
+            return new SnowflakeIdGenerator(nodeId);
+        }
+        long deadline = System.currentTimeMillis() + snowflakeProperties.getLeaseTtl();
+        nodeId = lease();
+        leasedNodeId = nodeId;
+        log.info("開始創建訂單號生成器,節點id: {}", nodeId);
+        generator = new SnowflakeIdGenerator(nodeId);
+        generator.setNode(nodeId, deadline);
+        return generator;
+    }
+
+    /**
+     * 依次尝试占用节点id,全部被占用时启动失败
+     *
+     * @return
+     */
+    private long lease() {
+        long size = SnowflakeIdGenerator.MAX_NODE_ID + 1;
+        Long counter = stringRedisTemplate.opsForValue().increment(NODE_COUNTER_KEY);
+        long start = counter == null ? 0 : counter % size;
+        for (long i = 0; i < size; i++) {
+            long nodeId = (start + i) % size;
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(NODE_LEASE_KEY_PREFIX + nodeId, token,
+                    snowflakeProperties.getLeaseTtl(), TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                return nodeId;
+            }
+        }
+        throw new IllegalStateException("没有空闲的订单号生成器节点id,所有" + size + "个节点id都在使用中");
+    }
+
+    /**
+     * 定时续期节点id租约
+     * 续期成功时把生成器的有效期限延长到本次续期开始时间加上过期时间;续期失败时期限不变,超过期限后停止生成id;
+     * 租约已被其他节点占用时立即停止生成id,再重新租用一个空闲的节点id
+     */
+    @Scheduled(fixedDelayString = "${sky.snowflake.lease-renew-interval:20000}")
+    public void renew() {
+        Long nodeId = leasedNodeId;
+        if (nodeId == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + snowflakeProperties.getLeaseTtl();
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(NODE_LEASE_KEY_PREFIX + nodeId), token,
+                    String.valueOf(snowflakeProperties.getLeaseTtl()));
+            if (Long.valueOf(1).equals(renewed)) {
+                generator.setNode(nodeId, deadline);
+                return;
+            }
+            log.error("订单号生成器节点id {} 的租约已被其他节点占用,暂停生成订单号并重新租用", nodeId);
+            generator.setNode(nodeId, Long.MIN_VALUE);
+            long newNodeId = lease();
+            leasedNodeId = newNodeId;
+            generator.setNode(newNodeId, deadline);
+            log.info("订单号生成器重新租用节点id: {}", newNodeId);
+        } catch (RuntimeException e) {
+            log.warn("订单号生成器节点id {} 续期失败", nodeId, e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        Long nodeId = leasedNodeId;
+        if (nodeId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(NODE_LEASE_KEY_PREFIX + nodeId), token);
+        } catch (RuntimeException e) {
+            log.warn("释放订单号生成器节点id {} 失败", nodeId, e);
+        }
+    }
+}
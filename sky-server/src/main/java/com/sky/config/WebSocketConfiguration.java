@@ -0,0 +1,38 @@
+package com.sky.config;
+
+import com.sky.interceptor.JwtTokenWebSocketInterceptor;
+import com.sky.properties.WebSocketProperties;
+import com.sky.websocket.WebSocketServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * 配置类,注册管理端订单推送的WebSocket服务
+ */
+@Configuration
+@EnableWebSocket
+@Slf4j
+public class WebSocketConfiguration implements WebSocketConfigurer {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private JwtTokenWebSocketInterceptor jwtTokenWebSocketInterceptor;
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        log.info("開始註冊WebSocket服務...");
+        //管理端以 /ws/{sid} 建立连接,握手时校验管理端令牌,只允许配置的来源
+        registry.addHandler(webSocketServer, "/ws/*")
+                .addInterceptors(jwtTokenWebSocketInterceptor)
+                .setAllowedOriginPatterns(webSocketProperties.getAllowedOriginPatterns().toArray(new String[0]));
+    }
+}
@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuCache;
+import com.sky.constant.CacheConstant;
 import com.sky.dto.CategoryDTO;
 import com.sky.dto.CategoryPageQueryDTO;
 import com.sky.entity.Category;
@@ -24,6 +26,8 @@ public class CategoryController {
 
     @Autowired
     private CategoryService categoryService;
+    @Autowired
+    private MenuCache menuCache;//用于清除菜单快照缓存
 
     /**
      * 新增分类
@@ -35,6 +39,7 @@ public class CategoryController {
     public Result<String> save(@RequestBody CategoryDTO categoryDTO){
         log.info("新增分类：{}", categoryDTO);
         categoryService.save(categoryDTO);
+        cleanCache();
         return Result.success();
     }
 
@@ -61,6 +66,7 @@ public class CategoryController {
     public Result<String> deleteById(Long id){
         log.info("删除分类：{}", id);
         categoryService.deleteById(id);
+        cleanCache();
         return Result.success();
     }
 
@@ -73,6 +79,7 @@ public class CategoryController {
     @ApiOperation("修改分类")
     public Result<String> update(@RequestBody CategoryDTO categoryDTO){
         categoryService.update(categoryDTO);
+        cleanCache();
         return Result.success();
     }
 
@@ -86,6 +93,7 @@ public class CategoryController {
     @ApiOperation("启用禁用分类")
     public Result<String> startOrStop(@PathVariable("status") Integer status, Long id){
         categoryService.startOrStop(status,id);
+        cleanCache();
         return Result.success();
     }
 
@@ -100,4 +108,11 @@ public class CategoryController {
         List<Category> list = categoryService.list(type);
         return Result.success(list);
     }
+
+    /**
+     * 分类变化后清除菜单快照缓存
+     */
+    private void cleanCache() {
+        menuCache.evictNamespace(CacheConstant.MENU_CACHE);
+    }
 }
@@ -2,7 +2,7 @@ package com.sky.controller.admin;
 
 import com.sky.constant.MessageConstant;
 import com.sky.result.Result;
-import com.sky.utils.GcsUtil;
+import com.sky.service.ImageService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +13,6 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.UUID;
 
 /**
  * 通用街口
@@ -25,7 +24,7 @@ import java.util.UUID;
 public class CommonController {
 
     @Autowired
-    private GcsUtil gcsUtil;
+    private ImageService imageService;
 
     /**
      * 文件上傳
@@ -38,15 +37,8 @@ public class CommonController {
         log.info("文件上傳: {}",file);
 
         try {
-            //原始文件名
-            String originalFilename = file.getOriginalFilename();
-            //擷取原始文件名的后綴
-            String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            //構造新文件名稱
-            String objectName = UUID.randomUUID().toString() + extension;
-
-            //文件請求路徑
-            String filePath = gcsUtil.upload(file.getBytes(), objectName);
+            //文件請求路徑,圖片的縮略圖在後台生成
+            String filePath = imageService.upload(file);
             return Result.success(filePath);
         } catch (IOException e) {
             log.error("文件上傳失敗: {}", e);
@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.MenuCache;
+import com.sky.constant.CacheConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -11,11 +13,9 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * 蔡品管理
@@ -29,7 +29,7 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;//用于清除redis中缓存的数据
+    private MenuCache menuCache;//用于清除本地缓存和redis中缓存的数据
     /**
      * 新增菜品
      * @param dishDTO
@@ -42,8 +42,9 @@ public class DishController {
         dishService.saveWithFlavor(dishDTO);
 
         //新增菜品时,只需要清除分类id对应的redis中缓存的数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        redisTemplate.delete(key);
+        menuCache.evict(CacheConstant.DISH_CACHE, dishDTO.getCategoryId());
+        //菜单快照同样需要重新生成
+        menuCache.evictNamespace(CacheConstant.MENU_CACHE);
 
 
         return Result.success();
@@ -73,8 +74,8 @@ public class DishController {
         log.info("菜品起售停售:{},{}", status, id);
         dishService.startOrStop(status, id);
 
-        //清除所有的菜品缓存数据,所有以dish_开头的key
-        cleanCache("dish_*");
+        //清除所有的菜品缓存数据,菜品命名空间版本号加一,并通知所有节点清除本地缓存
+        cleanCache(CacheConstant.DISH_CACHE);
 
         return Result.success();
     }
@@ -91,8 +92,8 @@ public class DishController {
         log.info("批量删除菜品:{}",ids);
         dishService.deleteBatch(ids);
 
-        //清除所有的菜品缓存数据,所有以dish_开头的key
-        cleanCache("dish_*");
+        //清除所有的菜品缓存数据,菜品命名空间版本号加一,并通知所有节点清除本地缓存
+        cleanCache(CacheConstant.DISH_CACHE);
 
         return Result.success();
     }
@@ -120,8 +121,8 @@ public class DishController {
         log.info("修改菜品:{}",dishDTO);
         dishService.updateWithFlavor(dishDTO);
 
-        //清除所有的菜品缓存数据,所有以dish_开头的key
-        cleanCache("dish_*");
+        //清除所有的菜品缓存数据,菜品命名空间版本号加一,并通知所有节点清除本地缓存
+        cleanCache(CacheConstant.DISH_CACHE);
 
         return Result.success();
     }
@@ -141,8 +142,9 @@ public class DishController {
 
 
 
-    private void cleanCache(String pattern) {
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+    private void cleanCache(String namespace) {
+        menuCache.evictNamespace(namespace);
+        //菜品变化后菜单快照同样需要重新生成
+        menuCache.evictNamespace(CacheConstant.MENU_CACHE);
     }
 }
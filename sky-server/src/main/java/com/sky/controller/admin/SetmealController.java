@@ -11,6 +11,7 @@ import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -36,7 +37,10 @@ public class SetmealController {
      */
     @PostMapping
     @ApiOperation("新增套餐")
-    @CacheEvict(cacheNames = "setmealCache",key = "#setmealDTO.categoryId")
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "setmealCache",key = "#setmealDTO.categoryId"),
+            @CacheEvict(cacheNames = "menu",allEntries = true)
+    })
     public Result save(@RequestBody SetmealDTO setmealDTO) {
         log.info("新增套餐:{}", setmealDTO);
         setmealService.saveWithDish(setmealDTO);
@@ -62,7 +66,7 @@ public class SetmealController {
      */
     @PostMapping("/status/{status}")
     @ApiOperation("套餐起售停售")
-    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
+    @CacheEvict(cacheNames = {"setmealCache","menu"},allEntries = true)
     public Result startOrStop(@PathVariable Integer status,Long id) {
         log.info("套餐起售停售:{}{}",status,id);
         setmealService.startOrStop(status,id);
@@ -84,7 +88,7 @@ public class SetmealController {
 
     @PutMapping
     @ApiOperation("修改套餐")
-    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
+    @CacheEvict(cacheNames = {"setmealCache","menu"},allEntries = true)
     public Result update(@RequestBody SetmealDTO setmealDTO) {
         log.info("修改套餐：｛｝",setmealDTO);
         setmealService.updateWithSetmealDishes(setmealDTO);
@@ -93,7 +97,7 @@ public class SetmealController {
 
     @DeleteMapping
     @ApiOperation("批量删除")
-    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
+    @CacheEvict(cacheNames = {"setmealCache","menu"},allEntries = true)
     public Result delete(@RequestParam List<Long> ids) {
         log.info("批量删除:{}",ids);
         setmealService.deleteBatch(ids);
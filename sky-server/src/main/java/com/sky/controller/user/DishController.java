@@ -1,18 +1,21 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuCache;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
+import com.sky.service.CategoryService;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import java.util.Collections;
 import java.util.List;
 
 @RestController("userDishController")
@@ -24,7 +27,10 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;//用于向redis中存取数据
+    private CategoryService categoryService;
+
+    @Autowired
+    private MenuCache menuCache;//用于向本地缓存和redis中存取数据
 
     /**
      * 根据分类id查询菜品
@@ -37,27 +43,20 @@ public class DishController {
     public Result<List<DishVO>> list(Long categoryId) {
 
         log.info("根据分类id查询菜品:{}",categoryId);
-        //構造reddis 中的key 規則是 dish_分類id
-        String key = "dish_" + categoryId;
-
-        //查詢reddis 中是否存在菜品數據
-        //redis的存取规则,当时数据是以什么类型存进去,就用什么类型取出来
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if (list != null && list.size() > 0) {
-            //存在则直接从redis返回
-            return Result.success(list);
+        //分类id不合法或分类不存在时直接返回空集合,不查询缓存和数据库
+        if (categoryId == null || categoryId <= 0 || categoryService.getById(categoryId) == null) {
+            return Result.success(Collections.emptyList());
         }
 
-        //如果存在 直接返回
-        //如果不存在 查詢數據庫 將查詢到的數據存入reddis
+        //先查本地緩存,再查reddis 中是否存在菜品數據 key規則是 dish:v版本號:分類id
+        //如果不存在 查詢數據庫 將查詢到的數據存入reddis和本地緩存,空結果只短期緩存
+        //同一分類同時只有一個請求查詢數據庫,其他請求等待它的結果
         Dish dish = Dish.builder()
                 .categoryId(categoryId)
                 .status(StatusConstant.ENABLE)//仅查询启售菜品
                 .build();
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key,list);//把查询出来的数据缓存到redis中
-
-
+        List<DishVO> list = (List<DishVO>) menuCache.get(CacheConstant.DISH_CACHE, categoryId,
+                () -> dishService.listWithFlavor(dish));
 
         return Result.success(list);
     }
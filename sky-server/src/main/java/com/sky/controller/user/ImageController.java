@@ -0,0 +1,191 @@
+package com.sky.controller.user;
+
+import com.sky.cache.DiskImageCache;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.regex.Pattern;
+
+/**
+ * 图片访问接口
+ * 图片以内容摘要命名,内容不会变化,响应可以被浏览器和CDN长期缓存
+ */
+@RestController
+@RequestMapping("/img")
+@Slf4j
+@Api(tags = "图片接口")
+public class ImageController {
+
+    //只允许不带路径的文件名
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    //tomcat的sendfile请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private DiskImageCache diskImageCache;
+
+    /**
+     * 获取图片,支持条件请求和单个Range
+     *
+     * @param request
+     * @param response
+     */
+    @GetMapping("/**")
+    @ApiOperation("获取图片")
+    public void image(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String uri = request.getRequestURI();
+        String name = uri.substring(uri.lastIndexOf('/') + 1);
+        if (!uri.substring(request.getContextPath().length()).equals("/img/" + name)
+                || !NAME_PATTERN.matcher(name).matches()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + name + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        //条件请求:ETag只由文件名决定,命中时不需要访问缓存,直接返回304
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        //文件通道在缓存锁内打开,发送期间文件被淘汰删除也不影响读取
+        DiskImageCache.CachedFile file;
+        try {
+            file = diskImageCache.open(name);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try (FileChannel channel = file.getChannel()) {
+            long length = channel.size();
+            long lastModified = file.getLastModified() / 1000 * 1000;
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+            if (ifNoneMatch != null) {
+                if (ifNoneMatch.trim().equals("*")) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            } else {
+                long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+                if (ifModifiedSince != -1 && lastModified <= ifModifiedSince) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+
+            MediaType mediaType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            response.setContentType(mediaType.toString());
+
+            //Range请求,If-Range与当前版本不一致时返回完整内容
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                long[] bounds = parseRange(range, length);
+                if (bounds == null) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds.length == 2) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            }
+            long count = end - start + 1;
+            response.setContentLengthLong(count);
+            if ("HEAD".equals(request.getMethod()) || count <= 0) {
+                return;
+            }
+
+            //容器支持sendfile时交给tomcat在请求处理完成后由内核直接发送文件,end不包含在内;
+            //淘汰的文件延迟删除,发送开始前文件仍在原路径
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.getPath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                return;
+            }
+
+            //不支持sendfile时从已打开的文件通道复制到响应输出流
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /**
+     * 解析Range请求头
+     * @param range
+     * @param length
+     * @return [start, end];有多个区间或格式无法识别时返回空数组,表示返回完整内容;区间无法满足时返回null
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                //bytes=-n 表示最后n个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
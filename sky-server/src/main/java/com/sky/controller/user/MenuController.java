@@ -0,0 +1,95 @@
+package com.sky.controller.user;
+
+import com.sky.cache.MenuSnapshot;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.result.Result;
+import com.sky.service.MenuService;
+import com.sky.vo.MenuChangesVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@RestController("userMenuController")
+@RequestMapping("/user/menu")
+@Slf4j
+@Api(tags = "C端-菜单快照接口")
+public class MenuController {
+
+    //与消息转换器使用同样的对象映射器,保证日期等字段的格式一致
+    private final JacksonObjectMapper objectMapper = new JacksonObjectMapper();
+
+    @Autowired
+    private MenuService menuService;
+
+    /**
+     * 一次性获取分类、菜品、套餐
+     * 直接输出预先编码好的字节,客户端携带的ETag未变化时返回304
+     *
+     * @param request
+     * @param response
+     */
+    @GetMapping
+    @ApiOperation("获取完整菜单")
+    public void menu(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MenuSnapshot snapshot = menuService.getSnapshot();
+
+        response.setHeader(HttpHeaders.ETAG, snapshot.getEtag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        //菜单未变化,无需返回内容
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.contains(snapshot.getEtag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        //客户端支持gzip时直接输出压缩好的字节
+        byte[] body;
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = snapshot.getGzip();
+        } else {
+            body = snapshot.getJson();
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * 获取某个版本之后的增量菜单
+     * 未携带版本号或变更日志已不包含该版本之后的全部变更时,返回完整菜单(full为true)
+     *
+     * @param since 客户端当前的菜单版本号
+     * @param request
+     * @param response
+     */
+    @GetMapping("/changes")
+    @ApiOperation("获取增量菜单")
+    public void changes(Long since, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MenuChangesVO changes = since == null || since < 0 ? null : menuService.getChanges(since);
+        if (changes == null) {
+            log.info("增量菜单无法满足,返回完整菜单:since={}", since);
+            menu(request, response);
+            return;
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(Result.success(changes));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
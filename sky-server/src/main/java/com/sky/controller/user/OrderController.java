@@ -104,16 +104,16 @@ public class OrderController {
         return Result.success();
     }
 
-//    /**
-//     * 催单
-//     * @return
-//     */
-//    @GetMapping("/reminder/{id}")
-//    @ApiOperation("催单")
-//    public Result reminder(@PathVariable Long id) {
-//        log.info("催单:{}",id);
-//        orderService.reminder(id);
-//        return Result.success();
-//    }
+    /**
+     * 催单
+     * @return
+     */
+    @GetMapping("/reminder/{id}")
+    @ApiOperation("催单")
+    public Result reminder(@PathVariable Long id) {
+        log.info("催单:{}",id);
+        orderService.reminder(id);
+        return Result.success();
+    }
 
 }
\ No newline at end of file
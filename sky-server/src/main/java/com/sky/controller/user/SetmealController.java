@@ -3,8 +3,10 @@ package com.sky.controller.user;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
+import com.sky.service.CategoryService;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
+import com.sky.vo.SetmealVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,9 +14,12 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RestController("userSetmealController")
 @RequestMapping("/user/setmeal")
@@ -23,6 +28,9 @@ public class SetmealController {
     @Autowired
     private SetmealService setmealService;
 
+    @Autowired
+    private CategoryService categoryService;
+
     /**
      * 条件查询
      *
@@ -31,13 +39,19 @@ public class SetmealController {
      */
     @GetMapping("/list")
     @ApiOperation("根据分类id查询套餐")
-    @Cacheable(cacheNames = "setmealCache", key = "#categoryId")
-    public Result<List<Setmeal>> list(Long categoryId) {
+    @Cacheable(cacheNames = "setmealCache", key = "#categoryId", sync = true,
+            condition = "#categoryId != null && #categoryId > 0")
+    public Result<List<SetmealVO>> list(Long categoryId) {
+        //分类id不合法或分类不存在时直接返回空集合,不查询缓存和数据库
+        if (categoryId == null || categoryId <= 0 || categoryService.getById(categoryId) == null) {
+            return Result.success(Collections.emptyList());
+        }
+
         Setmeal setmeal = new Setmeal();
         setmeal.setCategoryId(categoryId);
         setmeal.setStatus(StatusConstant.ENABLE);
 
-        List<Setmeal> list = setmealService.list(setmeal);
+        List<SetmealVO> list = setmealService.list(setmeal);
         return Result.success(list);
     }
 
@@ -53,4 +67,17 @@ public class SetmealController {
         List<DishItemVO> list = setmealService.getDishItemById(id);
         return Result.success(list);
     }
+
+    /**
+     * 根据套餐id集合批量查询包含的菜品列表,用于分类页面预加载
+     *
+     * @param ids
+     * @return
+     */
+    @GetMapping("/dish/batch")
+    @ApiOperation("根据套餐id集合批量查询包含的菜品列表")
+    public Result<Map<Long, List<DishItemVO>>> dishBatch(@RequestParam List<Long> ids) {
+        Map<Long, List<DishItemVO>> map = setmealService.getDishItemsByIds(ids);
+        return Result.success(map);
+    }
 }
@@ -38,7 +38,9 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
     private static final List<String> noAuthPaths = Arrays.asList(
             "/user/user/login",
             "/user/dish/list",
-            "/user/setmeal/list"
+            "/user/setmeal/list",
+            "/user/menu",
+            "/user/menu/changes"
             // 之後還可以加別的
     );
 
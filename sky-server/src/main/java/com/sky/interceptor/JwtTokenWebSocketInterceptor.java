@@ -0,0 +1,65 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * jwt令牌校验的拦截器 - 管理端WebSocket握手
+ * 与JwtTokenAdminInterceptor使用同样的令牌名称和秘钥;浏览器建立WebSocket连接时不能设置请求头,
+ * 请求头中没有令牌时从同名的查询参数中获取
+ */
+@Component
+@Slf4j
+public class JwtTokenWebSocketInterceptor implements HandshakeInterceptor {
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    /**
+     * 握手前校验jwt,通过后把员工id保存到会话属性中
+     *
+     * @param request
+     * @param response
+     * @param wsHandler
+     * @param attributes
+     * @return
+     */
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String tokenName = jwtProperties.getAdminTokenName();
+        String token = request.getHeaders().getFirst(tokenName);
+        if (token == null) {
+            token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(tokenName);
+        }
+
+        try {
+            Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+            Long empId = Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
+            attributes.put(JwtClaimsConstant.EMP_ID, empId);
+            return true;
+        } catch (Exception ex) {
+            log.info("WebSocket握手jwt校验失败:{}", request.getRemoteAddress());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
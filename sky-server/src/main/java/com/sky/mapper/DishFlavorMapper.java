@@ -23,6 +23,13 @@ public interface DishFlavorMapper {
     @Select("select * from dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> getByDishId(Long dishId);
 
+    /**
+     * 根据dish_id集合批量查询菜品口味
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
+
     /**
      * 根据dish_id删除对应菜品的口味
      * @param dishId
@@ -53,6 +53,20 @@ public interface DishMapper {
     @Select("select * from dish where id = #{id}")
     Dish selectById(Long id);
 
+    /**
+     * 根据id集合批量查询菜品
+     * @param ids
+     * @return
+     */
+    List<Dish> selectByIds(List<Long> ids);
+
+    /**
+     * 根据id集合批量查询菜品及分类名称
+     * @param ids
+     * @return
+     */
+    List<DishVO> selectVOByIds(List<Long> ids);
+
     /**
      * 批量删除菜品
      * 根據主鍵刪除菜品數據
@@ -76,6 +90,14 @@ public interface DishMapper {
     @Select("select d.* from dish d left join setmeal_dish sd on d.id = sd.dish_id where setmeal_id = #{setmealId}")
     List<Dish> getDishIdBySetmealId(Long setmealId);
 
+    /**
+     * 根据图片访问路径查询使用该图片的菜品id
+     * @param image
+     * @return
+     */
+    @Select("select id from dish where image = #{image}")
+    List<Long> getIdsByImage(String image);
+
     /**
      * 根据条件统计菜品数量
      * @param map
@@ -5,6 +5,7 @@ import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
@@ -40,6 +41,26 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 订单处于指定的某个状态时才更新订单状态及相关字段
+     *
+     * @param orders       订单id、新状态及随状态一起更新的字段
+     * @param fromStatuses 订单当前必须处于的状态之一
+     * @param refund       是否把已支付的订单改为退款
+     * @return 影响行数,为0表示订单不存在或状态不允许
+     */
+    int updateStatus(@Param("orders") Orders orders, @Param("fromStatuses") List<Integer> fromStatuses,
+                     @Param("refund") boolean refund);
+
+    /**
+     * 只查询订单状态
+     *
+     * @param id
+     * @return 订单不存在时返回null
+     */
+    @Select("select status from orders where id = #{id}")
+    Integer getStatusById(Long id);
+
     /**
      * 分页查询
      *
@@ -48,6 +69,28 @@ public interface OrderMapper {
      */
     Page<Orders> page(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 按(order_time, id)倒序的游标分页查询,cursorTime为null时查询第一页
+     *
+     * @param ordersPageQueryDTO
+     * @param cursorTime 上一页最后一条订单的下单时间
+     * @param cursorId   上一页最后一条订单的id
+     * @param limit
+     * @return
+     */
+    List<Orders> pageByCursor(@Param("query") OrdersPageQueryDTO ordersPageQueryDTO,
+                              @Param("cursorTime") LocalDateTime cursorTime,
+                              @Param("cursorId") Long cursorId,
+                              @Param("limit") int limit);
+
+    /**
+     * 统计符合分页查询条件的订单数量
+     *
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    long countByQuery(OrdersPageQueryDTO ordersPageQueryDTO);
+
 
     /**
      * 根据id获取订单数据
@@ -67,6 +110,14 @@ public interface OrderMapper {
     @Select("select count(*) from orders where status = #{status}")
     Integer countStatus(Integer status);
 
+    /**
+     * 一次查询统计各个状态的订单数量
+     *
+     * @return status:订单状态 count:订单数量
+     */
+    @Select("select status, count(id) as count from orders group by status")
+    List<Map<String, Object>> countGroupByStatus();
+
     /**
      * 根据订单状态和查询时间查询订单
      *
@@ -77,6 +128,43 @@ public interface OrderMapper {
     @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
 
+    /**
+     * 根据订单状态和下单时间查询一批订单id
+     *
+     * @param status
+     * @param orderTime
+     * @param limit
+     * @return
+     */
+    @Select("select id from orders where status = #{status} and order_time < #{orderTime} order by id limit #{limit}")
+    List<Long> getIdsByStatusAndOrderTimeLT(@Param("status") Integer status, @Param("orderTime") LocalDateTime orderTime,
+                                            @Param("limit") int limit);
+
+    /**
+     * 根据订单状态和开始派送时间查询一批订单id
+     *
+     * @param status
+     * @param deliveryStartTime
+     * @param limit
+     * @return
+     */
+    @Select("select id from orders where status = #{status} and delivery_start_time < #{deliveryStartTime} " +
+            "order by id limit #{limit}")
+    List<Long> getIdsByStatusAndDeliveryStartTimeLT(@Param("status") Integer status,
+                                                    @Param("deliveryStartTime") LocalDateTime deliveryStartTime,
+                                                    @Param("limit") int limit);
+
+    /**
+     * 批量更新仍处于指定状态的订单
+     *
+     * @param ids
+     * @param fromStatus 订单当前必须处于的状态
+     * @param orders     新状态及随状态一起更新的字段
+     * @return 实际更新的订单数
+     */
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("fromStatus") Integer fromStatus,
+                          @Param("orders") Orders orders);
+
     /**
      * 根据该日的起始时间和结束时间以及订单状态查询
      *
@@ -52,6 +52,20 @@ public interface SetmealMapper {
     @Select("select * from setmeal where id = #{id}")
     Setmeal selectById(Long id);
 
+    /**
+     * 根据id集合批量查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> selectByIds(List<Long> ids);
+
+    /**
+     * 根据id集合批量查询套餐及分类名称
+     * @param ids
+     * @return
+     */
+    List<SetmealVO> selectVOByIds(List<Long> ids);
+
     /**
      * 根据id删除套餐
      * @param id
@@ -66,6 +80,14 @@ public interface SetmealMapper {
      */
     List<Setmeal> list(Setmeal setmeal);
 
+    /**
+     * 根据图片访问路径查询使用该图片的套餐id
+     * @param image
+     * @return
+     */
+    @Select("select id from setmeal where image = #{image}")
+    List<Long> getIdsByImage(String image);
+
     /**
      * 根据套餐id查询包含的菜品
      * @param setmealId
@@ -75,6 +97,13 @@ public interface SetmealMapper {
             "where setmeal_id = #{setmealId}")
     List<DishItemVO> getDishItemBySetmealId(Long setmealId);
 
+    /**
+     * 根据套餐id集合批量查询包含的菜品
+     * @param setmealIds
+     * @return
+     */
+    List<DishItemVO> getDishItemsBySetmealIds(List<Long> setmealIds);
+
     /**
      * 根据条件统计套餐数量
      * @param map
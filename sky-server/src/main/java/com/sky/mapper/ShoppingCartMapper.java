@@ -4,6 +4,7 @@ import com.sky.entity.ShoppingCart;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
@@ -49,6 +50,34 @@ public interface ShoppingCartMapper {
     @Delete("delete from shopping_cart where id = #{id}")
     void deleteById(Long id);
 
+    /**
+     * 加入商品,购物车中已有同样的商品(同一用户、菜品、套餐、口味)时累加数量
+     * @param shoppingCart
+     */
+    void upsert(ShoppingCart shoppingCart);
+
+    /**
+     * 查询购物车商品唯一索引是否存在
+     * @return 唯一索引包含的列数,不存在时为0
+     */
+    @Select("select count(*) from information_schema.statistics " +
+            "where table_schema = database() and table_name = 'shopping_cart' and index_name = 'uk_shopping_cart_item'")
+    int countItemKeyColumns();
+
+    /**
+     * 商品数量大于1时减一
+     * @param shoppingCart
+     * @return 影响的行数
+     */
+    int decrement(ShoppingCart shoppingCart);
+
+    /**
+     * 商品数量只剩1件时删除该商品
+     * @param shoppingCart
+     * @return 影响的行数
+     */
+    int deleteLast(ShoppingCart shoppingCart);
+
     /**
      * 批量插入
      * @param shoppingCartList
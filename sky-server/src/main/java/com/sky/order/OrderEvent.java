@@ -0,0 +1,65 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单状态变更事件,声明每个事件允许的原状态和变更后的状态
+ * 状态机用一条带status in(允许的原状态)条件的update完成变更
+ */
+public enum OrderEvent {
+
+    //接单
+    CONFIRM(Orders.CONFIRMED, false, Orders.TO_BE_CONFIRMED),
+    //拒单
+    REJECT(Orders.CANCELLED, true, Orders.TO_BE_CONFIRMED),
+    //派送
+    DELIVER(Orders.DELIVERY_IN_PROGRESS, false, Orders.CONFIRMED),
+    //完成
+    COMPLETE(Orders.COMPLETED, false, Orders.DELIVERY_IN_PROGRESS),
+    //用户取消,只有待接单和待支付的订单可以由用户自己取消
+    USER_CANCEL(Orders.CANCELLED, true, Orders.TO_BE_CONFIRMED, Orders.PENDING_PAYMENT),
+    //商家取消,已完成和已取消的订单不能再取消
+    ADMIN_CANCEL(Orders.CANCELLED, true,
+            Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS, Orders.PENDING_PAYMENT);
+
+    private final Integer target;
+    private final boolean refund;
+    private final List<Integer> from;
+
+    OrderEvent(Integer target, boolean refund, Integer... from) {
+        this.target = target;
+        this.refund = refund;
+        this.from = Collections.unmodifiableList(Arrays.asList(from));
+    }
+
+    /**
+     * 变更后的状态
+     *
+     * @return
+     */
+    public Integer getTarget() {
+        return target;
+    }
+
+    /**
+     * 变更时是否把已支付的订单改为退款
+     *
+     * @return
+     */
+    public boolean isRefund() {
+        return refund;
+    }
+
+    /**
+     * 允许的原状态
+     *
+     * @return
+     */
+    public List<Integer> getFrom() {
+        return from;
+    }
+}
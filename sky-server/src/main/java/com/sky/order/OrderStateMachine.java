@@ -0,0 +1,51 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 订单状态机
+ * 每次状态变更都是一条带原状态条件(status in 允许的原状态)的update语句,由影响行数判断是否变更成功,
+ * 并发的重复操作只有一个能成功;
+ * 变更成功时不查询订单:只有一个原状态的事件按该原状态增减订单数量;
+ * 有多个原状态的事件不知道订单变更前具体处于哪个状态,只增加新状态的数量,原状态多出的数量由定时对账修正
+ */
+@Component
+public class OrderStateMachine {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+
+    /**
+     * 触发订单状态变更
+     *
+     * @param id      订单id
+     * @param event   状态变更事件
+     * @param changes 随状态一起更新的字段(取消原因、取消时间等),可以为null
+     */
+    public void fire(Long id, OrderEvent event, Orders changes) {
+        Orders orders = changes == null ? new Orders() : changes;
+        orders.setId(id);
+        orders.setStatus(event.getTarget());
+
+        List<Integer> from = event.getFrom();
+        if (orderMapper.updateStatus(orders, from, event.isRefund()) > 0) {
+            orderStatusCounter.transition(from.size() == 1 ? from.get(0) : null, event.getTarget());
+            return;
+        }
+
+        //变更失败时才查询一次订单,区分订单不存在和状态不允许
+        if (orderMapper.getStatusById(id) == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+    }
+}
@@ -0,0 +1,239 @@
+package com.sky.order;
+
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 各状态订单数量的计数器
+ * 计数保存在redis的hash中由所有节点共享,订单状态变更时在事务提交后同时增减本地和redis的计数;
+ * 每个节点定时把redis中的计数同步到本地,查询时只读本地计数,不访问数据库;
+ * 定时用一次分组统计与数据库对账,修正提交后未能写入redis等原因造成的偏差;
+ * 对账期间的状态变更另外记在一个增量hash中,覆盖计数时加回去,避免分组统计之后提交的变更被对账结果覆盖
+ */
+@Component
+@Slf4j
+public class OrderStatusCounter {
+
+    private static final String COUNT_KEY = "sky:order:status:count";
+    //对账锁,同一个对账周期内只有一个节点执行分组统计
+    private static final String RECONCILE_LOCK_KEY = "sky:order:status:reconcile";
+    //正在对账的标记,存在时状态变更同时记入增量
+    private static final String RECONCILING_KEY = "sky:order:status:reconciling";
+    //对账期间的状态变更增量
+    private static final String DELTA_KEY = "sky:order:status:delta";
+
+    //KEYS: 计数, 对账标记, 增量 ARGV: 原状态(空字符串表示新订单), 新状态, 订单数
+    //正在对账时先记入增量;计数还未初始化时不做增减,等待对账写入
+    private static final DefaultRedisScript<Long> TRANSITION_SCRIPT = new DefaultRedisScript<>(
+            "local keys = {} " +
+            "if redis.call('EXISTS', KEYS[2]) == 1 then table.insert(keys, KEYS[3]) end " +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then table.insert(keys, KEYS[1]) end " +
+            "for _, key in ipairs(keys) do " +
+            "if ARGV[1] ~= '' then redis.call('HINCRBY', key, ARGV[1], -tonumber(ARGV[3])) end " +
+            "redis.call('HINCRBY', key, ARGV[2], ARGV[3]) end " +
+            "return #keys", Long.class);
+
+    //KEYS: 计数, 对账标记, 增量 ARGV: 每两个一组: 状态, 数量
+    //用分组统计的结果覆盖计数,再加上统计开始后提交的变更
+    private static final DefaultRedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) " +
+            "for i = 1, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "local delta = redis.call('HGETALL', KEYS[3]) " +
+            "for i = 1, #delta, 2 do redis.call('HINCRBY', KEYS[1], delta[i], delta[i + 1]) end " +
+            "redis.call('DEL', KEYS[2], KEYS[3]) " +
+            "return 1", Long.class);
+
+    private static final List<String> KEYS = Arrays.asList(COUNT_KEY, RECONCILING_KEY, DELTA_KEY);
+
+    //本地计数
+    private final Map<Integer, AtomicLong> counts = new ConcurrentHashMap<>();
+    //本地计数是否已经从redis同步过
+    private volatile boolean loaded;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    /**
+     * 获取指定状态的订单数量
+     * 本地计数还没有同步成功时(例如redis不可用)退回到数据库分组统计
+     *
+     * @param statuses
+     * @return
+     */
+    public Map<Integer, Long> get(Integer... statuses) {
+        if (!loaded) {
+            sync();
+        }
+        Map<Integer, Long> result = new HashMap<>();
+        if (!loaded) {
+            Map<Integer, Long> dbCounts = countFromDatabase();
+            for (Integer status : statuses) {
+                result.put(status, dbCounts.getOrDefault(status, 0L));
+            }
+            return result;
+        }
+        for (Integer status : statuses) {
+            AtomicLong count = counts.get(status);
+            //对账前并发的增减可能让计数短暂为负数
+            result.put(status, count == null ? 0L : Math.max(count.get(), 0L));
+        }
+        return result;
+    }
+
+    /**
+     * 记录一次订单状态变更,在事务提交后生效
+     *
+     * @param from 原状态,新订单或原状态不确定时为null(只增加新状态的数量,由对账修正)
+     * @param to   新状态
+     */
+    public void transition(Integer from, Integer to) {
+        transition(from, to, 1);
+    }
+
+    /**
+     * 记录一批订单的同一种状态变更,在事务提交后生效
+     *
+     * @param from  原状态,新订单或原状态不确定时为null
+     * @param to    新状态
+     * @param count 订单数
+     */
+    public void transition(Integer from, Integer to, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(from, to, count);
+                }
+            });
+        } else {
+            apply(from, to, count);
+        }
+    }
+
+    /**
+     * 定时把redis中的计数同步到本地,redis中还没有计数时执行一次对账
+     */
+    @Scheduled(fixedDelayString = "${sky.order.status-sync-interval:1000}")
+    public void sync() {
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(COUNT_KEY);
+            if (entries.isEmpty()) {
+                reconcile();
+                return;
+            }
+            load(entries);
+        } catch (RuntimeException e) {
+            log.warn("同步订单状态计数失败", e);
+        }
+    }
+
+    /**
+     * 定时与数据库对账,用一次分组统计的结果覆盖redis中的计数
+     */
+    @Scheduled(initialDelayString = "${sky.order.reconcile-interval:300000}",
+            fixedDelayString = "${sky.order.reconcile-interval:300000}")
+    public void reconcile() {
+        try {
+            //锁的过期时间取对账间隔的一半,多个节点在一个周期内最多对账两次
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, "1",
+                    Math.max(orderProperties.getReconcileInterval() / 2, 1000), TimeUnit.MILLISECONDS);
+            if (!Boolean.TRUE.equals(locked)) {
+                return;
+            }
+
+            //分组统计开始前打上对账标记,统计开始后提交的变更都会记入增量
+            stringRedisTemplate.delete(DELTA_KEY);
+            stringRedisTemplate.opsForValue().set(RECONCILING_KEY, "1",
+                    Math.max(orderProperties.getReconcileInterval() / 2, 1000), TimeUnit.MILLISECONDS);
+            Map<Integer, Long> dbCounts = countFromDatabase();
+            List<String> args = new ArrayList<>();
+            //至少写入一个字段,让其他节点知道计数已经初始化
+            args.add("0");
+            args.add("0");
+            dbCounts.forEach((status, count) -> {
+                args.add(String.valueOf(status));
+                args.add(String.valueOf(count));
+            });
+            stringRedisTemplate.execute(RESET_SCRIPT, KEYS, args.toArray());
+
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(COUNT_KEY);
+            counts.keySet().removeIf(status -> !entries.containsKey(String.valueOf(status)));
+            load(entries);
+        } catch (RuntimeException e) {
+            log.warn("订单状态计数对账失败", e);
+        }
+    }
+
+    /**
+     * 用redis中的计数覆盖本地计数
+     *
+     * @param entries
+     */
+    private void load(Map<Object, Object> entries) {
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            Integer status = Integer.valueOf(entry.getKey().toString());
+            counts.computeIfAbsent(status, s -> new AtomicLong()).set(Long.parseLong(entry.getValue().toString()));
+        }
+        loaded = true;
+    }
+
+    /**
+     * 同时增减本地和redis的计数,redis写入失败时等待下次对账修正
+     *
+     * @param from
+     * @param to
+     * @param count
+     */
+    private void apply(Integer from, Integer to, int count) {
+        if (from != null) {
+            counts.computeIfAbsent(from, s -> new AtomicLong()).addAndGet(-count);
+        }
+        counts.computeIfAbsent(to, s -> new AtomicLong()).addAndGet(count);
+        try {
+            stringRedisTemplate.execute(TRANSITION_SCRIPT, KEYS,
+                    from == null ? "" : String.valueOf(from), String.valueOf(to), String.valueOf(count));
+        } catch (RuntimeException e) {
+            log.warn("更新订单状态计数失败 {} -> {}", from, to, e);
+        }
+    }
+
+    /**
+     * 一次分组查询统计各个状态的订单数量
+     *
+     * @return
+     */
+    private Map<Integer, Long> countFromDatabase() {
+        Map<Integer, Long> result = new HashMap<>();
+        for (Map<String, Object> row : orderMapper.countGroupByStatus()) {
+            Object status = row.get("status");
+            if (status != null) {
+                result.put(((Number) status).intValue(), ((Number) row.get("count")).longValue());
+            }
+        }
+        return result;
+    }
+}
@@ -60,5 +60,12 @@ public interface DishService {
      */
     List<DishVO> listWithFlavor(Dish dish);
 
+    /**
+     * 根据id集合批量查询菜品和对应的口味数据
+     * @param ids
+     * @return
+     */
+    List<DishVO> getByIdsWithFlavor(List<Long> ids);
+
 
 }
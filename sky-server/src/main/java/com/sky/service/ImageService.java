@@ -0,0 +1,31 @@
+package com.sky.service;
+
+import com.sky.vo.DishVO;
+import com.sky.vo.SetmealVO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface ImageService {
+
+    /**
+     * 上传文件,图片会在后台生成缩略图和列表图
+     * @param file
+     * @return 原文件的访问路径
+     * @throws IOException
+     */
+    String upload(MultipartFile file) throws IOException;
+
+    /**
+     * 为菜品填充缩略图和列表图的访问路径,尚未生成时使用原图
+     * @param dishes
+     */
+    void fillDishImages(List<DishVO> dishes);
+
+    /**
+     * 为套餐填充缩略图和列表图的访问路径,尚未生成时使用原图
+     * @param setmeals
+     */
+    void fillSetmealImages(List<SetmealVO> setmeals);
+}
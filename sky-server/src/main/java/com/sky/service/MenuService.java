@@ -0,0 +1,20 @@
+package com.sky.service;
+
+import com.sky.cache.MenuSnapshot;
+import com.sky.vo.MenuChangesVO;
+
+public interface MenuService {
+
+    /**
+     * 获取当前版本的完整菜单快照
+     * @return
+     */
+    MenuSnapshot getSnapshot();
+
+    /**
+     * 获取某个版本之后的增量菜单
+     * @param since
+     * @return 变更日志已不完整、需要返回完整菜单时返回null
+     */
+    MenuChangesVO getChanges(long since);
+}
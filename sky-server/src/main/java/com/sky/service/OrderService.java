@@ -98,11 +98,11 @@ public interface OrderService {
      */
     void complete(Long id);
 
-//    /**
-//     * 催单
-//     * @param id
-//     */
-//    void reminder(Long id);
+    /**
+     * 催单
+     * @param id
+     */
+    void reminder(Long id);
 
     /**
      * 商家端取消订单
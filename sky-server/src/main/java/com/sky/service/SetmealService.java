@@ -8,6 +8,7 @@ import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author 喜欢悠然独自在
@@ -57,7 +58,7 @@ public interface SetmealService {
      * @param setmeal
      * @return
      */
-    List<Setmeal> list(Setmeal setmeal);
+    List<SetmealVO> list(Setmeal setmeal);
 
     /**
      * 根据套餐id查询包含的菜品
@@ -65,4 +66,11 @@ public interface SetmealService {
      * @return
      */
     List<DishItemVO> getDishItemById(Long id);
+
+    /**
+     * 根据套餐id集合批量查询包含的菜品
+     * @param ids
+     * @return
+     */
+    Map<Long, List<DishItemVO>> getDishItemsByIds(List<Long> ids);
 }
\ No newline at end of file
@@ -2,6 +2,11 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CategoryIndex;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuSearchIndex;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
@@ -19,6 +24,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -34,6 +40,15 @@ public class CategoryServiceImpl implements CategoryService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuCache menuCache;
+    @Autowired
+    private MenuChangeLog menuChangeLog;
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    //本地分类索引,分类版本号变化后整体重建并替换
+    private volatile CategoryIndex categoryIndex;
 
     /**
      * 新增分类
@@ -54,6 +69,7 @@ public class CategoryServiceImpl implements CategoryService {
         //category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.insert(category);
+        rebuildIndex(category.getId());
     }
 
     /**
@@ -62,6 +78,23 @@ public class CategoryServiceImpl implements CategoryService {
      * @return
      */
     public PageResult pageQuery(CategoryPageQueryDTO categoryPageQueryDTO) {
+        //按名称搜索时由本地索引给出排好序的id,分类数据直接从本地分类索引中取
+        String name = categoryPageQueryDTO.getName();
+        if (name != null && !name.isEmpty()) {
+            List<Long> ids = menuSearchIndex.searchCategories(name, categoryPageQueryDTO.getType());
+            if (ids != null) {
+                CategoryIndex index = getIndex();
+                List<Category> records = new ArrayList<>();
+                for (Long id : MenuSearchIndex.page(ids, categoryPageQueryDTO.getPage(), categoryPageQueryDTO.getPageSize())) {
+                    Category category = index.getById(id);
+                    if (category != null) {
+                        records.add(category);
+                    }
+                }
+                return new PageResult(ids.size(), records);
+            }
+        }
+
         PageHelper.startPage(categoryPageQueryDTO.getPage(),categoryPageQueryDTO.getPageSize());
         //下一条sql进行分页，自动加入limit关键字分页
         Page<Category> page = categoryMapper.pageQuery(categoryPageQueryDTO);
@@ -89,6 +122,7 @@ public class CategoryServiceImpl implements CategoryService {
 
         //删除分类数据
         categoryMapper.deleteById(id);
+        rebuildIndex(id);
     }
 
     /**
@@ -104,6 +138,7 @@ public class CategoryServiceImpl implements CategoryService {
         //category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.update(category);
+        rebuildIndex(category.getId());
     }
 
     /**
@@ -119,6 +154,7 @@ public class CategoryServiceImpl implements CategoryService {
                 //.updateUser(BaseContext.getCurrentId())
                 .build();
         categoryMapper.update(category);
+        rebuildIndex(category.getId());
     }
 
     /**
@@ -127,6 +163,45 @@ public class CategoryServiceImpl implements CategoryService {
      * @return
      */
     public List<Category> list(Integer type) {
-        return categoryMapper.list(type);
+        return getIndex().list(type);
+    }
+
+    /**
+     * 根据id查询分类
+     * @param id
+     * @return
+     */
+    public Category getById(Long id) {
+        return getIndex().getById(id);
+    }
+
+    /**
+     * 获取本地分类索引,分类版本号与索引不一致时(本节点或其他节点修改了分类)重新构建
+     * @return
+     */
+    private CategoryIndex getIndex() {
+        long version = menuCache.version(CacheConstant.CATEGORY_CACHE);
+        CategoryIndex index = categoryIndex;
+        if (index != null && index.getVersion() == version) {
+            return index;
+        }
+        synchronized (this) {
+            index = categoryIndex;
+            if (index == null || index.getVersion() != version) {
+                index = CategoryIndex.build(categoryMapper.listAll(), version);
+                categoryIndex = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 分类变更后增加分类版本号通知所有节点,并立即重建本节点的索引
+     * @param id 发生变更的分类id,记录到菜单变更日志中
+     */
+    private void rebuildIndex(Long id) {
+        menuCache.evictNamespace(CacheConstant.CATEGORY_CACHE);
+        menuChangeLog.record(MenuChangeLog.TYPE_CATEGORY, id);
+        getIndex();
     }
 }
@@ -2,6 +2,10 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuSearchIndex;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -14,6 +18,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
+import com.sky.service.ImageService;
 import com.sky.vo.DishVO;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +26,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class DishServiceImpl implements DishService {
@@ -35,6 +43,18 @@ public class DishServiceImpl implements DishService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private MenuCache menuCache;
+
+    @Autowired
+    private MenuChangeLog menuChangeLog;
+
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    @Autowired
+    private ImageService imageService;
+
 
     /**
      * 新增菜品
@@ -62,7 +82,7 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
-
+        menuChangeLog.record(MenuChangeLog.TYPE_DISH, dishId);
     }
 
     /**
@@ -72,6 +92,20 @@ public class DishServiceImpl implements DishService {
      */
     @Override
     public PageResult pageQuery(DishPageQueryDTO dishPageQueryDTO) {
+        //按名称搜索时由本地索引给出排好序的id,数据库只查询当前页的记录
+        String name = dishPageQueryDTO.getName();
+        if (name != null && !name.isEmpty()) {
+            Integer categoryId = dishPageQueryDTO.getCategoryId();
+            List<Long> ids = menuSearchIndex.searchDishes(name,
+                    categoryId == null ? null : categoryId.longValue(), dishPageQueryDTO.getStatus());
+            if (ids != null) {
+                List<Long> pageIds = MenuSearchIndex.page(ids, dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
+                List<DishVO> records = pageIds.isEmpty() ? new ArrayList<>()
+                        : MenuSearchIndex.orderByIds(dishMapper.selectVOByIds(pageIds), pageIds, DishVO::getId);
+                return new PageResult(ids.size(), records);
+            }
+        }
+
         PageHelper.startPage(dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
         Page<DishVO> p = dishMapper.pageQuery(dishPageQueryDTO);
 
@@ -93,6 +127,8 @@ public class DishServiceImpl implements DishService {
                 .id(id)
                 .build();
         dishMapper.update(dish);
+        menuCache.evictAfterCommit(CacheConstant.DISH_ITEM_CACHE, id);
+        menuChangeLog.record(MenuChangeLog.TYPE_DISH, id);
     }
 
     /**
@@ -128,7 +164,20 @@ public class DishServiceImpl implements DishService {
         Dish dish = new Dish();
         //通过值拷贝获得dish对象
         BeanUtils.copyProperties(dishDTO, dish);
+        //查询修改前的菜品数据,用于判断图片和描述是否发生变化
+        Dish dishDB = dishMapper.selectById(dish.getId());
         dishMapper.update(dish);
+        menuCache.evictAfterCommit(CacheConstant.DISH_ITEM_CACHE, dish.getId());
+
+        //套餐菜品缓存中包含菜品的图片和描述,发生变化时清除关联套餐的缓存
+        if (dishDB != null && (isChanged(dish.getImage(), dishDB.getImage())
+                || isChanged(dish.getDescription(), dishDB.getDescription()))) {
+            List<Long> setmealIds = setmealDishMapper.getSetmealIdsByDishIds(Collections.singletonList(dish.getId()));
+            if (setmealIds != null) {
+                setmealIds.stream().distinct().forEach(setmealId ->
+                        menuCache.evictAfterCommit(CacheConstant.SETMEAL_DISH_CACHE, setmealId));
+            }
+        }
 
         //获得dishDTO对象中的菜品口味集合
         Long dishId = dish.getId();
@@ -143,6 +192,8 @@ public class DishServiceImpl implements DishService {
             //把新的菜品口味集合插入到表中
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        menuChangeLog.record(MenuChangeLog.TYPE_DISH, dishId);
     }
 
     /**
@@ -153,9 +204,10 @@ public class DishServiceImpl implements DishService {
     @Transactional
     @Override
     public void deleteBatch(List<Long> ids) {
-        for (Long id : ids) {
+        //一次性查出所有待删除的菜品
+        for (Dish dish : dishMapper.selectByIds(ids)) {
             //判断菜品是否为起售中的菜品
-            if (dishMapper.selectById(id).getStatus() == StatusConstant.ENABLE) {
+            if (dish.getStatus() == StatusConstant.ENABLE) {
                 //菜品起售中,不能删除
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
             }
@@ -180,6 +232,9 @@ public class DishServiceImpl implements DishService {
         dishMapper.deleteByIds(ids);
         //根據菜品id集合批量刪除菜品口味數據
         dishFlavorMapper.deleteByDishIds(ids);
+        ids.forEach(id -> menuCache.evictAfterCommit(CacheConstant.DISH_ITEM_CACHE, id));
+
+        menuChangeLog.record(MenuChangeLog.TYPE_DISH, ids);
     }
 
     /**
@@ -205,17 +260,60 @@ public class DishServiceImpl implements DishService {
     @Override
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.list(dish);//查询菜品表
+        return assembleWithFlavor(dishList);
+    }
+
+    /**
+     * 根据id集合批量查询菜品和对应的口味数据
+     * @param ids
+     * @return
+     */
+    @Override
+    public List<DishVO> getByIdsWithFlavor(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Dish> dishList = dishMapper.selectByIds(ids);
+        return assembleWithFlavor(dishList);
+    }
+
+    /**
+     * 判断更新的字段是否发生变化,为null表示本次不更新该字段
+     * @param newValue
+     * @param oldValue
+     * @return
+     */
+    private boolean isChanged(String newValue, String oldValue) {
+        return newValue != null && !newValue.equals(oldValue);
+    }
+
+    /**
+     * 把菜品集合和口味数据封装成DishVO集合
+     * 口味数据通过一次in查询批量取出,再在内存中按dishId分组,避免逐个菜品查询口味
+     *
+     * @param dishList
+     * @return
+     */
+    private List<DishVO> assembleWithFlavor(List<Dish> dishList) {
         List<DishVO> dishVOList = new ArrayList<>();
-        for (Dish d : dishList) {
-            DishVO dishVO = new DishVO();
-            BeanUtils.copyProperties(d,dishVO);//为每一个DishVO对象赋值
+        if (dishList == null || dishList.isEmpty()) {
+            return dishVOList;
+        }
 
-            //根据菜品id查询菜品对应的口味集合
-            List<DishFlavor> dishFlavors = dishFlavorMapper.getByDishId(d.getId());
+        //一次性查询所有菜品的口味,并按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
-            dishVO.setFlavors(dishFlavors);//为DishVO对象的口味集合赋值
+        for (Dish d : dishList) {
+            DishVO dishVO = new DishVO();
+            BeanUtils.copyProperties(d, dishVO);//为每一个DishVO对象赋值
+            //从分组结果中取出菜品对应的口味集合
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);//把封装好的DishVO对象加入到集合中
         }
+        //填充缩略图和列表图
+        imageService.fillDishImages(dishVOList);
         return dishVOList;
     }
 }
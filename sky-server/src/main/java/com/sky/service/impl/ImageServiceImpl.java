@@ -0,0 +1,421 @@
+package com.sky.service.impl;
+
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuChangeLog;
+import com.sky.constant.CacheConstant;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.ImageProperties;
+import com.sky.service.ImageService;
+import com.sky.utils.FileStorage;
+import com.sky.vo.DishVO;
+import com.sky.vo.SetmealVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class ImageServiceImpl implements ImageService {
+
+    //原图访问路径 -> "缩略图路径|列表图路径"
+    private static final String VARIANTS_KEY = "sky:image:variants";
+
+    //文件内容的sha-256 -> 访问路径
+    private static final String DIGEST_KEY = "sky:image:digest";
+
+    @Autowired
+    private FileStorage fileStorage;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private MenuCache menuCache;
+
+    @Autowired
+    private MenuChangeLog menuChangeLog;
+
+    private final ImageProperties imageProperties;
+
+    //生成图片的线程池,队列有界,满了直接放弃生成
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public ImageServiceImpl(ImageProperties imageProperties) {
+        this.imageProperties = imageProperties;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(imageProperties.getWorkers(), imageProperties.getWorkers(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(imageProperties.getQueueSize()), runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 上传文件
+     * 上传内容在转存到临时文件(不经过堆内存)的同时计算sha-256,内容相同的文件直接复用已经上传过的访问路径;
+     * 否则以摘要作为文件名从临时文件流式上传,再在后台由临时文件生成缩略图
+     * @param file
+     * @return
+     */
+    @Override
+    public String upload(MultipartFile file) throws IOException {
+        //原始文件名
+        String originalFilename = file.getOriginalFilename();
+        //截取原始文件名的后缀
+        String extension = originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase();
+
+        Path tmp = Files.createTempFile("sky-upload-", extension);
+        String url;
+        String digest;
+        try {
+            MessageDigest md = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), md)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            digest = toHex(md.digest());
+
+            //同样内容的文件已经上传过,直接复用
+            String existing = getByDigest(digest);
+            if (existing != null) {
+                log.info("文件内容已存在,复用访问路径:{}", existing);
+                Files.deleteIfExists(tmp);
+                return existing;
+            }
+
+            //以内容摘要作为文件名,并发上传同一文件时写入的是同一个对象
+            try (InputStream in = Files.newInputStream(tmp)) {
+                url = fileStorage.upload(in, file.getSize(), file.getContentType(), digest + extension);
+            }
+            saveDigest(digest, url);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        String contentType = file.getContentType();
+        if (contentType == null || !contentType.startsWith("image/")) {
+            Files.deleteIfExists(tmp);
+            return url;
+        }
+        try {
+            executor.execute(() -> createVariants(tmp, digest, url));
+        } catch (RejectedExecutionException e) {
+            log.warn("图片处理队列已满,不生成缩略图:{}", url);
+            Files.deleteIfExists(tmp);
+        }
+        return url;
+    }
+
+    /**
+     * 为菜品填充缩略图和列表图的访问路径
+     * @param dishes
+     */
+    @Override
+    public void fillDishImages(List<DishVO> dishes) {
+        if (dishes == null || dishes.isEmpty()) {
+            return;
+        }
+        List<String> images = new ArrayList<>();
+        dishes.forEach(dish -> images.add(dish.getImage()));
+        Map<String, String[]> variants = getVariants(images);
+        for (DishVO dish : dishes) {
+            String[] variant = variants.get(dish.getImage());
+            dish.setThumbImage(variant == null ? dish.getImage() : variant[0]);
+            dish.setListImage(variant == null ? dish.getImage() : variant[1]);
+        }
+    }
+
+    /**
+     * 为套餐填充缩略图和列表图的访问路径
+     * @param setmeals
+     */
+    @Override
+    public void fillSetmealImages(List<SetmealVO> setmeals) {
+        if (setmeals == null || setmeals.isEmpty()) {
+            return;
+        }
+        List<String> images = new ArrayList<>();
+        setmeals.forEach(setmeal -> images.add(setmeal.getImage()));
+        Map<String, String[]> variants = getVariants(images);
+        for (SetmealVO setmeal : setmeals) {
+            String[] variant = variants.get(setmeal.getImage());
+            setmeal.setThumbImage(variant == null ? setmeal.getImage() : variant[0]);
+            setmeal.setListImage(variant == null ? setmeal.getImage() : variant[1]);
+        }
+    }
+
+    /**
+     * 一次性从redis中查出所有图片的缩略图
+     * @param images
+     * @return 原图访问路径 -> [缩略图路径, 列表图路径]
+     */
+    private Map<String, String[]> getVariants(List<String> images) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String image : images) {
+            if (image != null && !image.isEmpty()) {
+                keys.add(image);
+            }
+        }
+        Map<String, String[]> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+        List<Object> fields = new ArrayList<>(keys);
+        List<Object> values;
+        try {
+            values = stringRedisTemplate.opsForHash().multiGet(VARIANTS_KEY, fields);
+        } catch (Exception e) {
+            log.error("查询缩略图失败,使用原图", e);
+            return result;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                result.put((String) fields.get(i), value.toString().split("\\|", 2));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 生成缩略图和列表图并记录它们的访问路径,完成后删除临时文件
+     * @param tmp
+     * @param baseName
+     * @param url
+     */
+    private void createVariants(Path tmp, String baseName, String url) {
+        try {
+            BufferedImage image = read(tmp, imageProperties.getListSize());
+            if (image == null) {
+                log.info("无法识别的图片格式,不生成缩略图:{}", url);
+                return;
+            }
+            String listUrl = store(resize(image, imageProperties.getListSize()), baseName + "_list.jpg");
+            String thumbUrl = store(resize(image, imageProperties.getThumbSize()), baseName + "_thumb.jpg");
+            stringRedisTemplate.opsForHash().put(VARIANTS_KEY, url, thumbUrl + "|" + listUrl);
+            log.info("缩略图已生成:{} -> {}, {}", url, thumbUrl, listUrl);
+            refreshMenu(url);
+        } catch (Exception e) {
+            log.error("生成缩略图失败:{}", url, e);
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败:{}", tmp, e);
+            }
+        }
+    }
+
+    /**
+     * 缩略图生成前已经保存的菜品和套餐,缓存中的缩略图还是原图,生成后需要使相关缓存失效并记录菜单变更;
+     * 缩略图生成后才保存的菜品和套餐,保存时已经清理过缓存
+     * @param url
+     */
+    private void refreshMenu(String url) {
+        try {
+            List<Long> dishIds = dishMapper.getIdsByImage(url);
+            List<Long> setmealIds = setmealMapper.getIdsByImage(url);
+            if (!dishIds.isEmpty()) {
+                menuCache.evictNamespace(CacheConstant.DISH_CACHE);
+                menuChangeLog.record(MenuChangeLog.TYPE_DISH, dishIds);
+            }
+            if (!setmealIds.isEmpty()) {
+                menuCache.evictNamespace(CacheConstant.SETMEAL_CACHE);
+                menuChangeLog.record(MenuChangeLog.TYPE_SETMEAL, setmealIds);
+            }
+            if (!dishIds.isEmpty() || !setmealIds.isEmpty()) {
+                menuCache.evictNamespace(CacheConstant.MENU_CACHE);
+            }
+        } catch (Exception e) {
+            log.error("缩略图生成后清理菜单缓存失败:{}", url, e);
+        }
+    }
+
+    /**
+     * 读取图片,原图远大于目标尺寸时隔行隔列读取,避免把超大图片完整解码到内存中
+     * @param path
+     * @param targetSize
+     * @return 无法识别时返回null
+     */
+    private BufferedImage read(Path path, int targetSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                //保留至少两倍目标尺寸,后续缩放时画质更好
+                int step = Math.max(1, longest / (targetSize * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按最长边等比缩放,每次最多缩小一半,透明背景填充为白色
+     * @param source
+     * @param maxSize
+     * @return
+     */
+    private BufferedImage resize(BufferedImage source, int maxSize) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        int w = width;
+        int h = height;
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+        return current;
+    }
+
+    /**
+     * 编码成jpeg并上传
+     * @param image
+     * @param objectName
+     * @return 访问路径
+     */
+    private String store(BufferedImage image, String objectName) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(imageProperties.getQuality());
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        byte[] bytes = out.toByteArray();
+        try (InputStream in = new ByteArrayInputStream(bytes)) {
+            return fileStorage.upload(in, bytes.length, "image/jpeg", objectName);
+        }
+    }
+
+    /**
+     * 根据内容摘要查询已上传文件的访问路径
+     * @param digest
+     * @return 不存在或查询失败时返回null
+     */
+    private String getByDigest(String digest) {
+        try {
+            Object url = stringRedisTemplate.opsForHash().get(DIGEST_KEY, digest);
+            return url == null ? null : url.toString();
+        } catch (Exception e) {
+            log.error("查询文件摘要失败,按新文件上传", e);
+            return null;
+        }
+    }
+
+    /**
+     * 记录内容摘要对应的访问路径,已存在时保留先写入的路径
+     * @param digest
+     * @param url
+     */
+    private void saveDigest(String digest, String url) {
+        try {
+            stringRedisTemplate.opsForHash().putIfAbsent(DIGEST_KEY, digest, url);
+        } catch (Exception e) {
+            log.error("记录文件摘要失败:{}", url, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+}
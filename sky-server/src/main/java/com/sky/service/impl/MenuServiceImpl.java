@@ -0,0 +1,235 @@
+package com.sky.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuSnapshot;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.result.Result;
+import com.sky.service.CategoryService;
+import com.sky.service.DishService;
+import com.sky.service.ImageService;
+import com.sky.service.MenuService;
+import com.sky.vo.DishVO;
+import com.sky.vo.MenuChangesVO;
+import com.sky.vo.MenuVO;
+import com.sky.vo.SetmealVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+@Slf4j
+public class MenuServiceImpl implements MenuService {
+
+    //菜单快照在菜单命名空间中的id
+    private static final String SNAPSHOT_ID = "snapshot";
+
+    //与消息转换器使用同样的对象映射器,保证日期等字段的格式一致
+    private final JacksonObjectMapper objectMapper = new JacksonObjectMapper();
+
+    @Autowired
+    private MenuCache menuCache;
+
+    @Autowired
+    private MenuChangeLog menuChangeLog;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private DishService dishService;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private ImageService imageService;
+
+    /**
+     * 获取当前版本的完整菜单快照
+     * 同一版本的快照只构建一次,之后都直接返回编码好的字节,并发请求只会触发一次构建
+     * @return
+     */
+    @Override
+    public MenuSnapshot getSnapshot() {
+        return (MenuSnapshot) menuCache.get(CacheConstant.MENU_CACHE, SNAPSHOT_ID, this::buildSnapshot);
+    }
+
+    /**
+     * 查询分类、菜品、套餐,编码成json并预先压缩
+     * @return
+     */
+    private MenuSnapshot buildSnapshot() {
+        log.info("构建菜单快照...");
+        //先读取版本号再查询数据,构建期间发生的变更会在下次增量请求中再次返回
+        long version = menuChangeLog.currentVersion();
+
+        //查询所有启用的分类
+        List<Category> categories = categoryService.list(null);
+
+        //查询所有启售的菜品以及口味
+        Dish dish = Dish.builder()
+                .status(StatusConstant.ENABLE)
+                .build();
+        List<DishVO> dishes = dishService.listWithFlavor(dish);
+
+        //查询所有启售的套餐
+        Setmeal setmeal = Setmeal.builder()
+                .status(StatusConstant.ENABLE)
+                .build();
+        List<SetmealVO> setmeals = toSetmealVOs(setmealMapper.list(setmeal));
+        imageService.fillSetmealImages(setmeals);
+
+        MenuVO menuVO = MenuVO.builder()
+                .version(version)
+                .categories(categories)
+                .dishes(dishes)
+                .setmeals(setmeals)
+                .build();
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Result.success(menuVO));
+            byte[] gzip = gzip(json);
+            String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+            return new MenuSnapshot(etag, json, gzip);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("菜单快照编码失败", e);
+        }
+    }
+
+    /**
+     * 获取某个版本之后的增量菜单
+     * 从变更日志中取出发生变更的id,再查询它们当前的状态:仍然启用的作为新增或修改返回,不存在或已禁用的作为删除返回
+     * @param since
+     * @return 变更日志已不完整、需要返回完整菜单时返回null
+     */
+    @Override
+    public MenuChangesVO getChanges(long since) {
+        long version = menuChangeLog.currentVersion();
+        if (since > version) {
+            //客户端的版本号比服务端还新(例如redis数据被清空),只能重新获取完整菜单
+            return null;
+        }
+        if (since == version) {
+            return MenuChangesVO.builder()
+                    .version(version)
+                    .categories(Collections.emptyList())
+                    .dishes(Collections.emptyList())
+                    .setmeals(Collections.emptyList())
+                    .removedCategoryIds(Collections.emptyList())
+                    .removedDishIds(Collections.emptyList())
+                    .removedSetmealIds(Collections.emptyList())
+                    .build();
+        }
+        List<MenuChangeLog.Change> changes = menuChangeLog.since(since);
+        if (changes == null) {
+            return null;
+        }
+
+        //按类型合并同一个id的多次变更
+        Set<Long> categoryIds = new LinkedHashSet<>();
+        Set<Long> dishIds = new LinkedHashSet<>();
+        Set<Long> setmealIds = new LinkedHashSet<>();
+        for (MenuChangeLog.Change change : changes) {
+            version = Math.max(version, change.getVersion());
+            switch (change.getType()) {
+                case MenuChangeLog.TYPE_CATEGORY:
+                    categoryIds.addAll(change.getIds());
+                    break;
+                case MenuChangeLog.TYPE_DISH:
+                    dishIds.addAll(change.getIds());
+                    break;
+                case MenuChangeLog.TYPE_SETMEAL:
+                    setmealIds.addAll(change.getIds());
+                    break;
+                default:
+                    log.warn("未知的菜单变更类型:{}", change.getType());
+            }
+        }
+
+        //分类
+        List<Category> categories = new ArrayList<>();
+        List<Long> removedCategoryIds = new ArrayList<>();
+        for (Long id : categoryIds) {
+            Category category = categoryService.getById(id);
+            if (category != null && StatusConstant.ENABLE.equals(category.getStatus())) {
+                categories.add(category);
+            } else {
+                removedCategoryIds.add(id);
+            }
+        }
+
+        //菜品
+        List<DishVO> dishes = new ArrayList<>();
+        Set<Long> removedDishIds = new LinkedHashSet<>(dishIds);
+        if (!dishIds.isEmpty()) {
+            for (DishVO dishVO : dishService.getByIdsWithFlavor(new ArrayList<>(dishIds))) {
+                if (StatusConstant.ENABLE.equals(dishVO.getStatus())) {
+                    dishes.add(dishVO);
+                    removedDishIds.remove(dishVO.getId());
+                }
+            }
+        }
+
+        //套餐
+        List<SetmealVO> setmeals = new ArrayList<>();
+        Set<Long> removedSetmealIds = new LinkedHashSet<>(setmealIds);
+        if (!setmealIds.isEmpty()) {
+            for (SetmealVO setmeal : toSetmealVOs(setmealMapper.selectByIds(new ArrayList<>(setmealIds)))) {
+                if (StatusConstant.ENABLE.equals(setmeal.getStatus())) {
+                    setmeals.add(setmeal);
+                    removedSetmealIds.remove(setmeal.getId());
+                }
+            }
+            imageService.fillSetmealImages(setmeals);
+        }
+
+        return MenuChangesVO.builder()
+                .version(version)
+                .categories(categories)
+                .dishes(dishes)
+                .setmeals(setmeals)
+                .removedCategoryIds(removedCategoryIds)
+                .removedDishIds(new ArrayList<>(removedDishIds))
+                .removedSetmealIds(new ArrayList<>(removedSetmealIds))
+                .build();
+    }
+
+    private List<SetmealVO> toSetmealVOs(List<Setmeal> setmeals) {
+        List<SetmealVO> result = new ArrayList<>(setmeals.size());
+        for (Setmeal setmeal : setmeals) {
+            SetmealVO setmealVO = new SetmealVO();
+            BeanUtils.copyProperties(setmeal, setmealVO);
+            result.add(setmealVO);
+        }
+        return result;
+    }
+
+    private byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("菜单快照压缩失败", e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -3,6 +3,8 @@ package com.sky.service.impl;
 import com.alibaba.fastjson.JSON;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.LocalCache;
+import com.sky.cart.CartStore;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
@@ -16,12 +18,16 @@ import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.AddressBookMapper;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.order.OrderEvent;
+import com.sky.order.OrderStateMachine;
+import com.sky.order.OrderStatusCounter;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
+import com.sky.websocket.WebSocketBus;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.BeanUtils;
@@ -29,12 +35,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -48,7 +58,25 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CartStore cartStore;
+
+    //订单菜品调试日志的采样率
+    private static final int LOG_SAMPLE_RATE = 100;
+    private final AtomicLong logSampleCounter = new AtomicLong();
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+    @Autowired
+    private WebSocketBus webSocketBus;
+
+    //游标分页未指定每页条数时的默认值
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    //订单近似总数的缓存时间,单位毫秒
+    private static final long COUNT_CACHE_TTL = 60_000;
+    private final LocalCache countCache = new LocalCache(1024, COUNT_CACHE_TTL);
 
 
     /**
@@ -69,9 +97,7 @@ public class OrderServiceImpl implements OrderService {
 
         //查询当前用户的购物车数据
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = cartStore.list(userId);
         //判断当前用户的购物车是否为空
         if (shoppingCartList == null || shoppingCartList.size() == 0) {
             //抛出业务异常
@@ -86,12 +112,13 @@ public class OrderServiceImpl implements OrderService {
         //todo 交付系統
         orders.setPayStatus(Orders.PAID);//设置支付状态 初始为未支付
         orders.setStatus(Orders.TO_BE_CONFIRMED);//设置订单状态 初始为待支付
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));//订单号
+        orders.setNumber(String.valueOf(snowflakeIdGenerator.nextId()));//订单号
         orders.setPhone(addressBook.getPhone());//用户手机号
         orders.setConsignee(addressBook.getConsignee());//收货人
         orders.setAddress(addressBook.getDetail());//地址 详细地址
 
         orderMapper.insert(orders);
+        orderStatusCounter.transition(null, orders.getStatus());
 
         //以当前用户id向订单明细表插入n条数据
         ArrayList<OrderDetail> orderDetailList = new ArrayList<>();
@@ -104,7 +131,14 @@ public class OrderServiceImpl implements OrderService {
         orderDetailMapper.insertBatch(orderDetailList);//批量插入
 
         //清空当前用户的购物车数据
-        shoppingCartMapper.deleteAll(userId);
+        cartStore.clean(userId);
+
+        //为管理端页面推送来单提醒,事务提交后才会发送
+        Map map = new HashMap();
+        map.put("type", 1);//1表示来单提醒 2表示用户催单
+        map.put("orderId", orders.getId());
+        map.put("content", "订单号：" + orders.getNumber());
+        webSocketBus.sendToAllClient(JSON.toJSONString(map));
 
         //封装成订单VO对象返回
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -198,34 +232,20 @@ public class OrderServiceImpl implements OrderService {
     public PageResult pageQuery4User(OrdersPageQueryDTO ordersPageQueryDTO) {
         //为OrdersPageQueryDTO的用户id属性赋值
         ordersPageQueryDTO.setUserId(BaseContext.getCurrentId());
+
+        //带游标或查询第一页时走游标分页,按页码翻页的旧客户端仍走offset分页
+        if (useCursor(ordersPageQueryDTO)) {
+            PageResult pageResult = pageByCursor(ordersPageQueryDTO);
+            pageResult.setRecords(getOrderVOListWithDetail(pageResult.getRecords()));
+            return pageResult;
+        }
+
         //设置分页参数
         PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
         //执行查询操作
         Page<Orders> p = orderMapper.page(ordersPageQueryDTO);
 
-        long total = p.getTotal();
-        List<Orders> result = p.getResult();
-
-        List<OrderVO> records = new ArrayList<>();
-
-        //判断是否有数据查出,有则查询各个订单对应的订单明细
-        if (p != null && p.getTotal() > 0) {
-            for (Orders orders : p) {
-                //获取订单id
-                Long orderId = orders.getId();
-                //根据订单id查询对应的订单明细
-                List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderId);
-                //把订单数据和订单明细数据赋值给OrdersVO对象
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetailList);
-
-                //把OrderVO对象添加到结果集合中
-                records.add(orderVO);
-            }
-        }
-
-        return new PageResult(total, records);
+        return new PageResult(p.getTotal(), getOrderVOListWithDetail(p.getResult()));
     }
 
     /**
@@ -256,34 +276,12 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public void userCancelById(Long id) {
-        //根据id查询订单
-        Orders ordersDB = orderMapper.getById(id);
-
-        //校验订单是否存在 不存在则抛出异常
-        if (ordersDB == null) {
-            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
-        }
-
-        //判断订单状态,除了待支付和待接单状态下用户可以自己取消,其他情况都抛出异常提示需要联系商家
-        if (ordersDB.getStatus() > 2) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        //新建一个订单对象,仅修改与状态相关的数据,方便订单表的更新操作
-        Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-
-        //如果订单处于待接单状态下取消,需要调用微信支付退款(省略,这里仅需把订单支付状态直接修改即可)
-        if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            orders.setPayStatus(Orders.REFUND);
-        }
-
-        //更新订单状态,取消原因,取消时间
-        orders.setStatus(Orders.CANCELLED);//设置订单状态为已取消
-        orders.setCancelReason("用户取消");//设置订单的取消原因
-        orders.setCancelTime(LocalDateTime.now());//设置订单取消时间
-        orderMapper.update(orders);
-
+        //只有待接单和待支付状态下用户可以自己取消,已支付的订单需要调用微信支付退款(省略,这里仅修改支付状态)
+        Orders orders = Orders.builder()
+                .cancelReason("用户取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        orderStateMachine.fire(id, OrderEvent.USER_CANCEL, orders);
     }
 
     /**
@@ -311,8 +309,8 @@ public class OrderServiceImpl implements OrderService {
             shoppingCartList.add(shoppingCart);//把购物车对象加入到购物车集合中
         }
 
-        //批量插入到数据库中
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        //批量加入购物车,已有的商品累加数量
+        cartStore.addAll(userId, shoppingCartList);
     }
 
     /**
@@ -323,6 +321,13 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
+        //带游标或查询第一页时走游标分页,深分页同样只扫描一页的数据
+        if (useCursor(ordersPageQueryDTO)) {
+            PageResult pageResult = pageByCursor(ordersPageQueryDTO);
+            pageResult.setRecords(getOrderVOList(pageResult.getRecords()));
+            return pageResult;
+        }
+
         //设置分页参数
         PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
 
@@ -330,7 +335,7 @@ public class OrderServiceImpl implements OrderService {
         Page<Orders> p = orderMapper.page(ordersPageQueryDTO);
 
         //调用方法把订单对象集合转成订单VO对象集合
-        List<OrderVO> orderVOList = getOrderVOList(p);
+        List<OrderVO> orderVOList = getOrderVOList(p.getResult());
 
         //封装成PageResult对象返回
         return new PageResult(p.getTotal(), orderVOList);
@@ -343,10 +348,11 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public OrderStatisticsVO statistics() {
-        //根据订单状态查询各个订单的数量
-        Integer toBeConfirmed = orderMapper.countStatus(Orders.TO_BE_CONFIRMED);
-        Integer confirmed = orderMapper.countStatus(Orders.CONFIRMED);
-        Integer deliveryInProgress = orderMapper.countStatus(Orders.DELIVERY_IN_PROGRESS);
+        //从本地计数中取出各个状态的订单数量,不访问数据库
+        Map<Integer, Long> counts = orderStatusCounter.get(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS);
+        Integer toBeConfirmed = counts.get(Orders.TO_BE_CONFIRMED).intValue();
+        Integer confirmed = counts.get(Orders.CONFIRMED).intValue();
+        Integer deliveryInProgress = counts.get(Orders.DELIVERY_IN_PROGRESS).intValue();
 
         //把数据封装成订单数字统计VO对象返回
         OrderStatisticsVO orderStatisticsVO = new OrderStatisticsVO();
@@ -363,12 +369,8 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
-        Orders orders = Orders.builder()
-                .id(ordersConfirmDTO.getId())
-                .status(Orders.CONFIRMED)
-                .build();
-
-        orderMapper.update(orders);
+        //只有待接单的订单可以接单
+        orderStateMachine.fire(ordersConfirmDTO.getId(), OrderEvent.CONFIRM, null);
     }
 
     /**
@@ -378,28 +380,12 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) {
-
-        Orders ordersDB = orderMapper.getById(ordersRejectionDTO.getId());
-
-        //订单只有处于待接单的状态下才能进行拒单操作,否则抛出业务异常
-        if (ordersDB == null || !(ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED))) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        //创建订单对象
+        //订单只有处于待接单的状态下才能进行拒单操作,已付款的订单需要退款(由于未接入微信支付,所以直接修改支付状态即可)
         Orders orders = Orders.builder()
-                .id(ordersRejectionDTO.getId())
-                .status(Orders.CANCELLED)
                 .rejectionReason(ordersRejectionDTO.getRejectionReason())
                 .cancelTime(LocalDateTime.now())
                 .build();
-
-        //判断订单是否已经付款,付款了需要进行退款(由于未接入微信支付,所以直接修改支付状态即可)
-        if (ordersDB.getPayStatus().equals(Orders.PAID)) {
-            orders.setPayStatus(Orders.REFUND);
-        }
-
-        orderMapper.update(orders);
+        orderStateMachine.fire(ordersRejectionDTO.getId(), OrderEvent.REJECT, orders);
     }
 
     /**
@@ -409,20 +395,11 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public void delivery(Long id) {
-        //从数据库中查出数据,获取订单状态进行比对
-        Orders ordersDB = orderMapper.getById(id);
-        //只有订单状态为待派送的订单才能进行派送订单操作
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.CONFIRMED)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-        //创建一个订单对象
+        //只有订单状态为待派送的订单才能进行派送订单操作,记录开始派送时间用于判断派送超时
         Orders orders = Orders.builder()
-                .id(id)
-                .status(Orders.DELIVERY_IN_PROGRESS)
+                .deliveryStartTime(LocalDateTime.now())
                 .build();
-
-        orderMapper.update(orders);
-
+        orderStateMachine.fire(id, OrderEvent.DELIVER, orders);
     }
 
     /**
@@ -431,11 +408,6 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersCancelDTO
      */
     public void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
-        // 根据id查询订单
-        Orders ordersDB = orderMapper.getById(ordersCancelDTO.getId());
-
-        //支付状态
-        Integer payStatus = ordersDB.getPayStatus();
 //        if (payStatus == 1) {
 //            //用户已支付，需要退款
 //            String refund = weChatPayUtil.refund(
@@ -447,12 +419,11 @@ public class OrderServiceImpl implements OrderService {
 //        }
 
         // 管理端取消订单需要退款，根据订单id更新订单状态、取消原因、取消时间
-        Orders orders = new Orders();
-        orders.setId(ordersCancelDTO.getId());
-        orders.setStatus(Orders.CANCELLED);
-        orders.setCancelReason(ordersCancelDTO.getCancelReason());
-        orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        Orders orders = Orders.builder()
+                .cancelReason(ordersCancelDTO.getCancelReason())
+                .cancelTime(LocalDateTime.now())
+                .build();
+        orderStateMachine.fire(ordersCancelDTO.getId(), OrderEvent.ADMIN_CANCEL, orders);
     }
 
 
@@ -463,67 +434,60 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public void complete(Long id) {
-        //查询对应订单
-        Orders ordersDB = orderMapper.getById(id);
-        //判断订单的状态是否是派送中,不是则抛出业务异常
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.DELIVERY_IN_PROGRESS)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-        //创建订单对象
+        //只有派送中的订单才能完成
         Orders orders = Orders.builder()
-                .id(id)
-                .status(Orders.COMPLETED)
                 .deliveryTime(LocalDateTime.now())
                 .build();
+        orderStateMachine.fire(id, OrderEvent.COMPLETE, orders);
+    }
 
-        orderMapper.update(orders);
+    /**
+     * 催单
+     *
+     * @param id
+     */
+    @Override
+    public void reminder(Long id) {
+        Orders ordersDB = orderMapper.getById(id);
+        //只能催自己的订单
+        if (ordersDB == null || !ordersDB.getUserId().equals(BaseContext.getCurrentId())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        if (!ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        //当用户点击催单后就为管理端页面推送催单提醒
+        //通过websocket向客户端浏览器推送消息 消息封装在一个Map集合中 里面的key有 type orderId content
+        Map map = new HashMap<>();
+        map.put("type", 2);//1表示来单提醒 2表示用户催单
+        map.put("orderId", ordersDB.getId());
+        map.put("content", "订单号：" + ordersDB.getNumber());
+
+        //把map转成json字符串
+        String json = JSON.toJSONString(map);
+        //把json字符串推送给所有与websocket连接的客户端浏览器,同一订单连续催单时尚未发送的提醒只保留一条
+        webSocketBus.sendToAllClient("reminder:" + ordersDB.getId(), json);
     }
-//
-//    /**
-//     * 催单
-//     *
-//     * @param id
-//     */
-//    @Override
-//    public void reminder(Long id) {
-//        Orders ordersDB = orderMapper.getById(id);
-//        //进行非空校验且订单状态处于待接单才能进行催单
-//        if (ordersDB == null && (ordersDB.getStatus() != Orders.TO_BE_CONFIRMED)) {
-//            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-//        }
-//        //当用户点击催单后就为管理端页面推送催单提醒
-//        //通过websocket向客户端浏览器推送消息 消息封装在一个Map集合中 里面的key有 type orderId content
-//        Map map = new HashMap<>();
-//        map.put("type", 2);//1表示来单提醒 2表示用户催单
-//        map.put("orderId", ordersDB.getId());
-//        map.put("content", "订单号：" + ordersDB.getNumber());
-//
-//        //把map转成json字符串
-//        String json = JSON.toJSONString(map);
-//        //把json字符串推送给所有与websocket连接的客户端浏览器
-//        webSocketServer.sendToAllClient(json);
-//    }
 
     /**
      * 把集合中的订单对象转换成订单VO对象,并且为菜品信息字段赋值
      *
-     * @param p
+     * @param result
      * @return
      */
-    private List<OrderVO> getOrderVOList(Page<Orders> p) {
+    private List<OrderVO> getOrderVOList(List<Orders> result) {
         List<OrderVO> orderVOList = new ArrayList<>();
 
-        //获取查询结果
-        List<Orders> result = p.getResult();
-
         //作非空校验
         if (!CollectionUtils.isEmpty(result)) {
-            for (Orders orders : p) {
+            //一次性查询本页所有订单的订单明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(result);
+            for (Orders orders : result) {
 
                 //把订单数据封装成VO对象
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDishes(getOrderDishes(orders.getId()));
+                orderVO.setOrderDishes(getOrderDishes(orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>())));
 
                 orderVOList.add(orderVO);
 
@@ -532,17 +496,161 @@ public class OrderServiceImpl implements OrderService {
         return orderVOList;
     }
 
+    /**
+     * 把集合中的订单对象转换成带订单明细的订单VO对象
+     *
+     * @param result
+     * @return
+     */
+    private List<OrderVO> getOrderVOListWithDetail(List<Orders> result) {
+        List<OrderVO> records = new ArrayList<>();
+
+        //判断是否有数据查出,有则一次性查询本页所有订单的订单明细
+        if (!CollectionUtils.isEmpty(result)) {
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(result);
+            for (Orders orders : result) {
+                //取出订单对应的订单明细
+                List<OrderDetail> orderDetailList = orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>());
+                //把订单数据和订单明细数据赋值给OrdersVO对象
+                OrderVO orderVO = new OrderVO();
+                BeanUtils.copyProperties(orders, orderVO);
+                orderVO.setOrderDetailList(orderDetailList);
+
+                //把OrderVO对象添加到结果集合中
+                records.add(orderVO);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 是否走游标分页:请求带了游标,或者查询的是第一页
+     *
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    private boolean useCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+        return StringUtils.hasText(ordersPageQueryDTO.getCursor()) || ordersPageQueryDTO.getPage() <= 1;
+    }
+
+    /**
+     * 按(order_time, id)游标分页查询订单,records为订单实体集合,由调用方再转换成VO
+     * 多查一条数据用来判断是否还有下一页,不需要count和offset
+     *
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    private PageResult pageByCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+        int pageSize = ordersPageQueryDTO.getPageSize() > 0 ? ordersPageQueryDTO.getPageSize() : DEFAULT_PAGE_SIZE;
+
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (StringUtils.hasText(ordersPageQueryDTO.getCursor())) {
+            Orders last = decodeCursor(ordersPageQueryDTO.getCursor());
+            cursorTime = last.getOrderTime();
+            cursorId = last.getId();
+        }
+
+        List<Orders> ordersList = orderMapper.pageByCursor(ordersPageQueryDTO, cursorTime, cursorId, pageSize + 1);
+
+        String nextCursor = null;
+        if (ordersList.size() > pageSize) {
+            ordersList = ordersList.subList(0, pageSize);
+            nextCursor = encodeCursor(ordersList.get(pageSize - 1));
+        }
+
+        PageResult pageResult = new PageResult(countOrders(ordersPageQueryDTO), ordersList);
+        pageResult.setNextCursor(nextCursor);
+        return pageResult;
+    }
+
+    /**
+     * 统计符合查询条件的订单总数
+     * 第一页默认直接count返回精确总数并写入缓存;带游标的后续页或客户端接受近似总数时返回本地缓存的值,
+     * 同一查询条件在缓存时间内只count一次
+     *
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    private long countOrders(OrdersPageQueryDTO ordersPageQueryDTO) {
+        String key = ordersPageQueryDTO.getUserId() + ":" + ordersPageQueryDTO.getStatus() + ":"
+                + ordersPageQueryDTO.getNumber() + ":" + ordersPageQueryDTO.getPhone() + ":"
+                + ordersPageQueryDTO.getBeginTime() + ":" + ordersPageQueryDTO.getEndTime();
+
+        Boolean approximate = ordersPageQueryDTO.getApproximateTotal();
+        if (approximate == null) {
+            approximate = StringUtils.hasText(ordersPageQueryDTO.getCursor());
+        }
+        if (approximate) {
+            Long total = (Long) countCache.get(key);
+            if (total != null) {
+                return total;
+            }
+        }
+
+        long total = orderMapper.countByQuery(ordersPageQueryDTO);
+        countCache.put(key, total);
+        return total;
+    }
+
+    /**
+     * 把订单的下单时间和id编码成不透明的游标
+     *
+     * @param orders
+     * @return
+     */
+    private String encodeCursor(Orders orders) {
+        String cursor = orders.getOrderTime() + "_" + orders.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标,返回只包含下单时间和id的订单对象
+     *
+     * @param cursor
+     * @return
+     */
+    private Orders decodeCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = value.lastIndexOf('_');
+            return Orders.builder()
+                    .orderTime(LocalDateTime.parse(value.substring(0, index)))
+                    .id(Long.parseLong(value.substring(index + 1)))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new OrderBusinessException(MessageConstant.ORDER_CURSOR_INVALID);
+        }
+    }
+
+    /**
+     * 根据订单集合一次性查询所有订单明细,并按订单id分组
+     *
+     * @param ordersList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        if (orderIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
     /**
      * 把订单明细表的菜品数据、菜品数量以字符串的形式拼接起来
      *
-     * @param orderId
+     * @param orderDetailList
      * @return
      */
-    private String getOrderDishes(Long orderId) {
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderId);
+    private String getOrderDishes(List<OrderDetail> orderDetailList) {
         List<String> orderDishList = orderDetailList.stream().map(orderDetail -> {
             String orderDishes = orderDetail.getName() + "*" + orderDetail.getNumber() + ";";
-            log.info("orderDishes = " + orderDishes);
+            //每LOG_SAMPLE_RATE条明细只输出一条调试日志
+            if (log.isDebugEnabled() && logSampleCounter.incrementAndGet() % LOG_SAMPLE_RATE == 0) {
+                log.debug("orderDishes = {}", orderDishes);
+            }
             return orderDishes;
         }).collect(Collectors.toList());//把stream流的数据收集到List集合中
         return String.join(" ", orderDishList);
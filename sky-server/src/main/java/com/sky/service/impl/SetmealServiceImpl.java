@@ -2,6 +2,10 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.MenuCache;
+import com.sky.cache.MenuChangeLog;
+import com.sky.cache.MenuSearchIndex;
+import com.sky.constant.CacheConstant;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -15,6 +19,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.service.ImageService;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
@@ -23,7 +28,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * @author 喜欢悠然独自在
@@ -41,6 +51,21 @@ public class SetmealServiceImpl implements SetmealService {
     @Autowired
     private DishMapper dishMapper;
 
+    @Autowired
+    private MenuCache menuCache;
+
+    @Autowired
+    private MenuChangeLog menuChangeLog;
+
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    @Autowired
+    private ImageService imageService;
+
+    //批量查询套餐菜品时一次最多查询的套餐数量
+    private static final int MAX_BATCH_SIZE = 50;
+
     /**
      * 新增菜品
      *
@@ -66,6 +91,8 @@ public class SetmealServiceImpl implements SetmealService {
         }
         //在套餐菜品表中使用foreach批量插入数据
         setmealDishMapper.insertBatch(setmealDishes);
+
+        menuChangeLog.record(MenuChangeLog.TYPE_SETMEAL, setmealId);
     }
 
     /**
@@ -76,6 +103,20 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Override
     public PageResult page(SetmealPageQueryDTO setmealPageQueryDTO) {
+        //按名称搜索时由本地索引给出排好序的id,数据库只查询当前页的记录
+        String name = setmealPageQueryDTO.getName();
+        if (name != null && !name.isEmpty()) {
+            Integer categoryId = setmealPageQueryDTO.getCategoryId();
+            List<Long> ids = menuSearchIndex.searchSetmeals(name,
+                    categoryId == null ? null : categoryId.longValue(), setmealPageQueryDTO.getStatus());
+            if (ids != null) {
+                List<Long> pageIds = MenuSearchIndex.page(ids, setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize());
+                List<SetmealVO> records = pageIds.isEmpty() ? new ArrayList<>()
+                        : MenuSearchIndex.orderByIds(setmealMapper.selectVOByIds(pageIds), pageIds, SetmealVO::getId);
+                return new PageResult(ids.size(), records);
+            }
+        }
+
         //设置分页参数
         PageHelper.startPage(setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize());
         Page<SetmealVO> p = setmealMapper.page(setmealPageQueryDTO);
@@ -109,6 +150,11 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status)
                 .build();
         setmealMapper.update(setmeal);
+
+        //清除该套餐包含菜品的缓存
+        menuCache.evictAfterCommit(CacheConstant.SETMEAL_DISH_CACHE, id);
+        menuCache.evictAfterCommit(CacheConstant.SETMEAL_ITEM_CACHE, id);
+        menuChangeLog.record(MenuChangeLog.TYPE_SETMEAL, id);
     }
 
     /**
@@ -162,6 +208,11 @@ public class SetmealServiceImpl implements SetmealService {
             //插入新数据
             setmealDishMapper.insertBatch(setmealDishes);
         }
+
+        //事务提交后清除该套餐包含菜品的缓存
+        menuCache.evictAfterCommit(CacheConstant.SETMEAL_DISH_CACHE, setmealId);
+        menuCache.evictAfterCommit(CacheConstant.SETMEAL_ITEM_CACHE, setmealId);
+        menuChangeLog.record(MenuChangeLog.TYPE_SETMEAL, setmealId);
     }
 
     /**
@@ -185,7 +236,12 @@ public class SetmealServiceImpl implements SetmealService {
 
             //删除套餐菜品表中对应的数据
             setmealDishMapper.deleteBySetmealId(setmealId);
+
+            //事务提交后清除该套餐包含菜品的缓存
+            menuCache.evictAfterCommit(CacheConstant.SETMEAL_DISH_CACHE, setmealId);
+            menuCache.evictAfterCommit(CacheConstant.SETMEAL_ITEM_CACHE, setmealId);
         }
+        menuChangeLog.record(MenuChangeLog.TYPE_SETMEAL, ids);
     }
 
     /**
@@ -194,8 +250,15 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     @Override
-    public List<Setmeal> list(Setmeal setmeal) {
-        List<Setmeal> list = setmealMapper.list(setmeal);
+    public List<SetmealVO> list(Setmeal setmeal) {
+        List<SetmealVO> list = new ArrayList<>();
+        for (Setmeal item : setmealMapper.list(setmeal)) {
+            SetmealVO setmealVO = new SetmealVO();
+            BeanUtils.copyProperties(item, setmealVO);
+            list.add(setmealVO);
+        }
+        //填充缩略图和列表图
+        imageService.fillSetmealImages(list);
         return list;
     }
 
@@ -206,6 +269,42 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Override
     public List<DishItemVO> getDishItemById(Long id) {
-        return setmealMapper.getDishItemBySetmealId(id);
+        //先查缓存,未命中时查询数据库并写入缓存
+        return (List<DishItemVO>) menuCache.get(CacheConstant.SETMEAL_DISH_CACHE, id,
+                () -> setmealMapper.getDishItemBySetmealId(id));
+    }
+
+    /**
+     * 根据套餐id集合批量查询包含的菜品
+     * 缓存未命中的套餐通过一次in查询加载,再按套餐id分组
+     * @param ids
+     * @return
+     */
+    @Override
+    public Map<Long, List<DishItemVO>> getDishItemsByIds(List<Long> ids) {
+        //过滤不合法的id并去重,限制单次查询的数量
+        List<Long> setmealIds = ids.stream()
+                .filter(id -> id != null && id > 0)
+                .distinct()
+                .limit(MAX_BATCH_SIZE)
+                .collect(Collectors.toList());
+        if (setmealIds.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        Map<Long, Object> cached = menuCache.getAll(CacheConstant.SETMEAL_DISH_CACHE, setmealIds, missIds -> {
+            Map<Long, List<DishItemVO>> loaded = setmealMapper.getDishItemsBySetmealIds(missIds).stream()
+                    .collect(Collectors.groupingBy(DishItemVO::getSetmealId));
+            //不存在的套餐也放入空集合,让缓存记住这个结果
+            Map<Long, List<DishItemVO>> result = new HashMap<>();
+            for (Long missId : missIds) {
+                result.put(missId, loaded.getOrDefault(missId, new ArrayList<>()));
+            }
+            return result;
+        });
+
+        Map<Long, List<DishItemVO>> result = new LinkedHashMap<>();
+        cached.forEach((id, value) -> result.put(id, (List<DishItemVO>) value));
+        return result;
     }
 }
\ No newline at end of file
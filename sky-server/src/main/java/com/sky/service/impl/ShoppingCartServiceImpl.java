@@ -1,13 +1,17 @@
 package com.sky.service.impl;
 
+import com.sky.cache.MenuCache;
+import com.sky.cart.CartStore;
+import com.sky.constant.CacheConstant;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,7 +28,7 @@ import java.util.List;
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private CartStore cartStore;
 
     @Autowired
     private DishMapper dishMapper;
@@ -32,48 +36,43 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Autowired
     private SetmealMapper setmealMapper;
 
+    @Autowired
+    private MenuCache menuCache;
+
     /**
      * 添加购物车
+     * 商品名称、图片、价格从菜单缓存中读取,由购物车存储原子完成插入或数量加一,连续点击不会产生重复的商品
      * @param shoppingCartDTO
      */
     @Override
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        //判断当前加入的商品购物车内是否存在了
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);//ShoppingCartDTO中缺少用户id属性
-        Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId);//获取当前登录用户的id并赋值
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        //如果已经存在了,则该商品的数量+1
-        if (list != null && list.size() > 0) {
-            ShoppingCart sc = list.get(0);//一个用户id只能查出一个购物车数据,所以直接获取集合中第一条数据即可
-            sc.setNumber(sc.getNumber() + 1);
-            //更新数据
-            shoppingCartMapper.updateById(sc);
-        }else {
-            //如果不存在,则需要插入一条购物车数据
-
-            //判断本次添加到购物车中的是菜品还是套餐
-            Long dishId = shoppingCartDTO.getDishId();
-            if (dishId != null) {//本次添加的是菜品
-                Dish dish = dishMapper.selectById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            }else {//本次添加的是套餐
-                Long setmealId = shoppingCartDTO.getSetmealId();
-                Setmeal setmeal = setmealMapper.selectById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
+        Long userId = BaseContext.getCurrentId();//获取当前登录用户的id
+
+        //判断本次添加到购物车中的是菜品还是套餐
+        Long dishId = shoppingCartDTO.getDishId();
+        if (dishId != null) {//本次添加的是菜品
+            Dish dish = (Dish) menuCache.get(CacheConstant.DISH_ITEM_CACHE, dishId, () -> dishMapper.selectById(dishId));
+            if (dish == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_FOUND);
             }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
-
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        }else {//本次添加的是套餐
+            Long setmealId = shoppingCartDTO.getSetmealId();
+            Setmeal setmeal = setmealId == null ? null
+                    : (Setmeal) menuCache.get(CacheConstant.SETMEAL_ITEM_CACHE, setmealId, () -> setmealMapper.selectById(setmealId));
+            if (setmeal == null) {
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_FOUND);
+            }
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
         }
-
+        shoppingCart.setCreateTime(LocalDateTime.now());
+        cartStore.add(userId, shoppingCart);
     }
 
     /**
@@ -82,10 +81,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public List<ShoppingCart> showShoppingCart() {
-        ShoppingCart shoppingCart = ShoppingCart.builder()
-                .userId(BaseContext.getCurrentId())//获取用户id为购物车对象赋值
-                .build();
-        return shoppingCartMapper.list(shoppingCart);
+        return cartStore.list(BaseContext.getCurrentId());
     }
 
     /**
@@ -93,7 +89,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public void clean() {
-        shoppingCartMapper.deleteAll(BaseContext.getCurrentId());
+        cartStore.clean(BaseContext.getCurrentId());
     }
 
     /**
@@ -102,26 +98,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     @Override
     public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        //先查询当前用户id的购物车数据
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);
-        shoppingCart.setUserId(BaseContext.getCurrentId());
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        //判断取出来是否有数据
-        if (list != null && list.size() > 0) {
-            ShoppingCart sc = list.get(0);//因为一个用户只能查出来一个购物车数据,所以直接取第一个数据就行
-
-            Integer number = sc.getNumber();//查看当前商品的数量
-            if (number == 1) {
-                //如果商品数量等于1,则直接删除商品
-                shoppingCartMapper.deleteById(sc.getId());
-            } else {
-                //如果商品数量大于1,则修改商品数量即可
-                sc.setNumber(sc.getNumber() - 1);
-                shoppingCartMapper.updateById(sc);
-
-            }
-        }
+        cartStore.sub(BaseContext.getCurrentId(), shoppingCart);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.order.OrderStatusCounter;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * 定时处理超时订单
+ * 每批先查出一批订单id,再用一条带原状态条件的update批量更新,每条语句单独提交;
+ * 通过redis锁保证同一时间只有一个节点在处理,锁过期后即使重复执行,原状态条件也能保证每个订单只更新一次
+ */
+@Component
+@Slf4j
+public class OrderTask {
+
+    private static final String LOCK_KEY_PREFIX = "sky:order:sweep:";
+
+    //只释放自己持有的锁
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    //累计处理的订单数
+    private final AtomicLong cancelledTotal = new AtomicLong();
+    private final AtomicLong completedTotal = new AtomicLong();
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    /**
+     * 处理超时未支付的订单,自动取消
+     */
+    @Scheduled(fixedDelayString = "${sky.order.sweep-interval:60000}")
+    public void processTimeoutOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        Orders orders = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("订单超时,自动取消")
+                .cancelTime(now)
+                .build();
+        LocalDateTime deadline = now.minusMinutes(orderProperties.getPaymentTimeout());
+        sweep(Orders.PENDING_PAYMENT,
+                limit -> orderMapper.getIdsByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, deadline, limit),
+                orders, cancelledTotal);
+    }
+
+    /**
+     * 处理开始派送后超过派送超时时间仍处于派送中的订单,自动完成
+     */
+    @Scheduled(fixedDelayString = "${sky.order.sweep-interval:60000}")
+    public void processDeliveryOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .deliveryTime(now)
+                .build();
+        LocalDateTime deadline = now.minusMinutes(orderProperties.getDeliveryTimeout());
+        sweep(Orders.DELIVERY_IN_PROGRESS,
+                limit -> orderMapper.getIdsByStatusAndDeliveryStartTimeLT(Orders.DELIVERY_IN_PROGRESS, deadline, limit),
+                orders, completedTotal);
+    }
+
+    /**
+     * 分批把超时且处于fromStatus的订单更新为orders中的状态
+     *
+     * @param fromStatus
+     * @param query   按批大小查询一批超时订单的id
+     * @param orders
+     * @param counter 累计处理的订单数
+     */
+    private void sweep(Integer fromStatus, IntFunction<List<Long>> query, Orders orders, AtomicLong counter) {
+        String lockKey = LOCK_KEY_PREFIX + fromStatus;
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token,
+                orderProperties.getSweepInterval(), TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("其他节点正在处理状态为{}的超时订单", fromStatus);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        int chunkSize = orderProperties.getSweepChunkSize();
+        long total = 0;
+        int chunks = 0;
+        try {
+            while (chunks < orderProperties.getSweepMaxChunks()) {
+                List<Long> ids = query.apply(chunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                //期间被用户或商家修改过状态的订单不会被更新
+                int updated = orderMapper.updateStatusByIds(ids, fromStatus, orders);
+                orderStatusCounter.transition(fromStatus, orders.getStatus(), updated);
+                total += updated;
+                chunks++;
+                if (ids.size() < chunkSize) {
+                    break;
+                }
+            }
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        long accumulated = counter.addAndGet(total);
+        if (total > 0) {
+            log.info("超时订单处理完成 状态:{} -> {} 订单数:{} 批数:{} 耗时:{}ms 吞吐:{}条/秒 累计:{}",
+                    fromStatus, orders.getStatus(), total, chunks, elapsed, total * 1000 / Math.max(elapsed, 1),
+                    accumulated);
+        } else {
+            log.debug("没有状态为{}的超时订单 耗时:{}ms", fromStatus, elapsed);
+        }
+    }
+}
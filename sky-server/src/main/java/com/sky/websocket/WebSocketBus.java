@@ -0,0 +1,179 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 跨节点的WebSocket广播
+ * 推送的消息先在本地缓冲,每个发送间隔合并成一条redis消息发布一次;
+ * 所有节点(包括发布者自己)订阅同一个频道,收到后只转发给本节点的连接
+ */
+@Component
+@Slf4j
+public class WebSocketBus implements MessageListener {
+
+    public static final String CHANNEL = "sky:websocket:broadcast";
+
+    //一条redis消息最多包含的推送条数
+    private static final int MAX_BATCH = 200;
+
+    //待发布的消息
+    private final ConcurrentLinkedQueue<Item> queue = new ConcurrentLinkedQueue<>();
+    //是否已经安排了发布任务
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    //没有合并键的消息使用的序号
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "websocket-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    /**
+     * 向所有节点的连接群发,在事务中调用时等事务提交后再发送
+     *
+     * @param message
+     */
+    public void sendToAllClient(String message) {
+        sendToAllClient(null, message);
+    }
+
+    /**
+     * 向所有节点的连接群发,在事务中调用时等事务提交后再发送
+     *
+     * @param key     合并键,同一批次和同一连接队列中的同键消息只保留最新的一条,为null时不合并
+     * @param message
+     */
+    public void sendToAllClient(String key, String message) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(key, message);
+                }
+            });
+        } else {
+            publish(key, message);
+        }
+    }
+
+    /**
+     * 接收所有节点发布的消息,转发给本节点的连接
+     *
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONArray items = JSON.parseArray(new String(message.getBody(), StandardCharsets.UTF_8));
+        log.debug("收到WebSocket广播:{}条", items.size());
+        if (webSocketServer.getSessionCount() == 0) {
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            JSONObject item = items.getJSONObject(i);
+            webSocketServer.broadcast(item.getString("k"), item.getString("m"));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * 放入待发布队列,本发送间隔内的第一条消息负责安排发布任务
+     *
+     * @param key
+     * @param message
+     */
+    private void publish(String key, String message) {
+        queue.add(new Item(key != null ? key : "#" + sequence.incrementAndGet(), message, key != null));
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, webSocketProperties.getFlushInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 把缓冲的消息合并后发布到redis,发布失败时直接发送给本节点的连接
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        Map<String, Item> batch = new LinkedHashMap<>();
+        Item item;
+        while ((item = queue.poll()) != null) {
+            batch.put(item.key, item);
+            if (batch.size() >= MAX_BATCH) {
+                send(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(Map<String, Item> batch) {
+        List<Map<String, String>> items = new ArrayList<>(batch.size());
+        for (Item item : batch.values()) {
+            Map<String, String> map = new LinkedHashMap<>();
+            if (item.coalesce) {
+                map.put("k", item.key);
+            }
+            map.put("m", item.message);
+            items.add(map);
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, JSON.toJSONString(items));
+        } catch (RuntimeException e) {
+            log.warn("发布WebSocket广播失败,只发送给本节点的连接", e);
+            for (Item i : batch.values()) {
+                webSocketServer.broadcast(i.coalesce ? i.key : null, i.message);
+            }
+        }
+    }
+
+    private static class Item {
+        private final String key;
+        private final String message;
+        //是否带有调用方指定的合并键
+        private final boolean coalesce;
+
+        private Item(String key, String message, boolean coalesce) {
+            this.key = key;
+            this.message = message;
+            this.coalesce = coalesce;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 管理端订单推送服务
+ * 每个连接有一个有界的待发送队列,用容器的异步发送逐条发出,上一条发送完成后才发送下一条,
+ * 调用方和其他连接都不会等待某个连接的发送;
+ * 带合并键的消息在发送前又有同键的消息到达时,只发送最新的一条;
+ * 队列已满或者单条消息发送超时的连接视为消费过慢,直接断开,不影响其他连接和调用方
+ */
+@Component
+@Slf4j
+public class WebSocketServer extends TextWebSocketHandler {
+
+    //会话id -> 连接
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    //没有合并键的消息使用的序号
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final WebSocketProperties webSocketProperties;
+
+    @Autowired
+    public WebSocketServer(WebSocketProperties webSocketProperties) {
+        this.webSocketProperties = webSocketProperties;
+    }
+
+    /**
+     * 连接建立成功
+     *
+     * @param session
+     */
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        channels.put(session.getId(), new Channel(session, asyncRemote(session)));
+        log.info("客户端：{} 建立连接", sid(session));
+    }
+
+    /**
+     * 收到客户端消息
+     *
+     * @param session
+     * @param message
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        log.debug("收到来自客户端：{} 的信息:{}", sid(session), message.getPayload());
+    }
+
+    /**
+     * 连接关闭
+     *
+     * @param session
+     * @param status
+     */
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Channel channel = channels.remove(session.getId());
+        if (channel != null) {
+            channel.discard();
+        }
+        log.info("连接断开:{} {}", sid(session), status);
+    }
+
+    /**
+     * 把消息放入本节点所有连接的发送队列,不等待发送完成
+     * 需要推送给所有节点的连接时使用WebSocketBus
+     *
+     * @param key     合并键,同一个连接上还未发送的同键消息只保留最新的一条,为null时不合并
+     * @param message
+     */
+    public void broadcast(String key, String message) {
+        TextMessage textMessage = new TextMessage(message);
+        for (Channel channel : channels.values()) {
+            if (!channel.offer(key, textMessage)) {
+                //队列已满,正在进行的发送完成或超时后断开连接
+                channels.remove(channel.session.getId(), channel);
+                log.warn("客户端：{} 待发送消息过多,断开连接", sid(channel.session));
+            }
+        }
+    }
+
+    /**
+     * 本节点当前的连接数
+     *
+     * @return
+     */
+    public int getSessionCount() {
+        return channels.size();
+    }
+
+    /**
+     * 获取容器的异步发送端,并设置发送超时时间
+     *
+     * @param session
+     * @return 不是标准WebSocket容器的连接时返回null
+     */
+    private RemoteEndpoint.Async asyncRemote(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession) {
+            Session nativeSession = ((NativeWebSocketSession) session).getNativeSession(Session.class);
+            if (nativeSession != null) {
+                RemoteEndpoint.Async remote = nativeSession.getAsyncRemote();
+                remote.setSendTimeout(webSocketProperties.getSendTimeLimit());
+                return remote;
+            }
+        }
+        return null;
+    }
+
+    private static String sid(WebSocketSession session) {
+        String path = session.getUri() == null ? "" : session.getUri().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * 单个连接及其待发送队列
+     */
+    private class Channel implements SendHandler {
+
+        private final WebSocketSession session;
+        //异步发送端,为null时退回到在调用线程同步发送
+        private final RemoteEndpoint.Async remote;
+        //合并键 -> 消息,按入队顺序发送
+        private final LinkedHashMap<String, TextMessage> pending = new LinkedHashMap<>();
+        //是否有消息正在发送
+        private boolean sending;
+        //是否需要断开
+        private boolean evicted;
+
+        private Channel(WebSocketSession session, RemoteEndpoint.Async remote) {
+            this.session = session;
+            this.remote = remote;
+        }
+
+        /**
+         * 消息入队,没有正在发送的消息时开始发送,队列已满时返回false
+         *
+         * @param key
+         * @param message
+         * @return
+         */
+        private boolean offer(String key, TextMessage message) {
+            synchronized (this) {
+                if (evicted) {
+                    return true;
+                }
+                if (key != null && pending.containsKey(key)) {
+                    pending.put(key, message);
+                    return true;
+                }
+                if (pending.size() >= webSocketProperties.getQueueSize()) {
+                    evicted = true;
+                    pending.clear();
+                    return false;
+                }
+                pending.put(key != null ? key : "#" + sequence.incrementAndGet(), message);
+                if (sending) {
+                    return true;
+                }
+                sending = true;
+            }
+            sendNext();
+            return true;
+        }
+
+        /**
+         * 取出下一条待发送的消息,没有或者需要断开时返回null并结束发送
+         *
+         * @return
+         */
+        private synchronized TextMessage poll() {
+            Iterator<TextMessage> iterator = pending.values().iterator();
+            if (evicted || !iterator.hasNext()) {
+                sending = false;
+                return null;
+            }
+            TextMessage message = iterator.next();
+            iterator.remove();
+            return message;
+        }
+
+        /**
+         * 丢弃还未发送的消息
+         */
+        private synchronized void discard() {
+            evicted = true;
+            pending.clear();
+        }
+
+        private synchronized boolean isEvicted() {
+            return evicted;
+        }
+
+        /**
+         * 发送下一条消息,异步发送时在发送完成的回调中继续发送
+         */
+        private void sendNext() {
+            TextMessage message;
+            while ((message = poll()) != null) {
+                try {
+                    if (remote != null) {
+                        remote.sendText(message.getPayload(), this);
+                        return;
+                    }
+                    session.sendMessage(message);
+                } catch (IOException | RuntimeException e) {
+                    failed(e);
+                }
+            }
+            if (isEvicted() && session.isOpen()) {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException e) {
+                    log.debug("断开客户端：{} 失败", sid(session), e);
+                }
+            }
+        }
+
+        /**
+         * 异步发送完成,发送失败或超时时断开连接
+         *
+         * @param result
+         */
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                failed(result.getException());
+            }
+            sendNext();
+        }
+
+        private void failed(Throwable e) {
+            log.warn("向客户端：{} 发送消息失败,断开连接", sid(session), e);
+            channels.remove(session.getId(), this);
+            discard();
+        }
+    }
+}
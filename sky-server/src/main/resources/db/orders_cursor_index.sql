@@ -0,0 +1,7 @@
+-- 订单游标分页依赖的索引
+
+-- 管理端按下单时间倒序翻页
+alter table orders add index idx_order_time_id (order_time, id);
+
+-- 用户端查询自己的历史订单
+alter table orders add index idx_user_order_time_id (user_id, order_time, id);
@@ -0,0 +1,12 @@
+-- 超时订单批量处理依赖的字段和索引
+
+-- 待支付订单按下单时间判断是否超时
+alter table orders add index idx_status_order_time (status, order_time);
+
+-- 派送中订单按开始派送的时间判断是否超时,开始派送时写入
+alter table orders add column delivery_start_time datetime null comment '开始派送时间' after estimated_delivery_time;
+
+-- 已经在派送中的订单没有开始派送时间,从执行时开始计时,避免按下单时间被提前完成
+update orders set delivery_start_time = now() where status = 4 and delivery_start_time is null;
+
+alter table orders add index idx_status_delivery_start_time (status, delivery_start_time);
@@ -0,0 +1,24 @@
+-- 购物车商品唯一索引,sky.cart.store=mysql时必需,加入购物车的upsert依赖它合并同一件商品
+-- dish_id、setmeal_id、dish_flavor可以为null,通过生成列参与唯一索引
+-- 执行前先合并已有的重复商品,否则创建唯一索引会失败
+
+update shopping_cart sc
+    join (select min(id) as keep_id, sum(number) as total
+          from shopping_cart
+          group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+          having count(*) > 1) dup on sc.id = dup.keep_id
+set sc.number = dup.total;
+
+delete sc
+from shopping_cart sc
+    join shopping_cart keep
+        on keep.user_id = sc.user_id
+            and ifnull(keep.dish_id, 0) = ifnull(sc.dish_id, 0)
+            and ifnull(keep.setmeal_id, 0) = ifnull(sc.setmeal_id, 0)
+            and ifnull(keep.dish_flavor, '') = ifnull(sc.dish_flavor, '')
+            and keep.id < sc.id;
+
+alter table shopping_cart
+    add column item_key varchar(255) generated always as
+        (concat_ws('|', user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, ''))) stored,
+    add unique key uk_shopping_cart_item (item_key);
@@ -0,0 +1,113 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 紧凑序列化器的正确性测试,以及与jdk序列化的体积对比
+ */
+public class CompactRedisSerializerTest {
+
+    private static final LocalDateTime UPDATE_TIME = LocalDateTime.of(2024, 5, 1, 12, 30, 0);
+
+    private final CompactRedisSerializer compactSerializer = new CompactRedisSerializer();
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    @Test
+    public void roundTripDishList() {
+        List<DishVO> dishes = dishes(20);
+        Object decoded = compactSerializer.deserialize(compactSerializer.serialize(dishes));
+        assertEquals(dishes, decoded);
+    }
+
+    @Test
+    public void roundTripSetmealList() {
+        List<Setmeal> setmeals = setmeals(20);
+        Object decoded = compactSerializer.deserialize(compactSerializer.serialize(setmeals));
+        assertEquals(setmeals, decoded);
+    }
+
+    @Test
+    public void nullAndEmpty() {
+        assertEquals(0, compactSerializer.serialize(null).length);
+        assertNull(compactSerializer.deserialize(null));
+        assertNull(compactSerializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    public void fallsBackToJdkForLegacyData() {
+        List<DishVO> dishes = dishes(5);
+        byte[] legacy = jdkSerializer.serialize(dishes);
+        assertEquals((byte) 0xAC, legacy[0]);
+        assertEquals((byte) 0xED, legacy[1]);
+        assertEquals(dishes, compactSerializer.deserialize(legacy));
+    }
+
+    @Test
+    public void smallerThanJdk() {
+        List<DishVO> dishes = dishes(30);
+        List<Setmeal> setmeals = setmeals(30);
+
+        assertTrue(compactSerializer.serialize(dishes).length < jdkSerializer.serialize(dishes).length,
+                "smile编码的菜品列表应当比jdk序列化更小");
+        assertTrue(compactSerializer.serialize(setmeals).length < jdkSerializer.serialize(setmeals).length,
+                "smile编码的套餐列表应当比jdk序列化更小");
+    }
+
+    private static List<DishVO> dishes(int count) {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            DishVO dish = DishVO.builder()
+                    .id(i)
+                    .name("宫保鸡丁" + i)
+                    .categoryId(11L)
+                    .price(new BigDecimal("38.00"))
+                    .image("https://storage.example.com/sky/" + i + ".png")
+                    .description("经典川菜,花生香脆,鸡肉滑嫩")
+                    .status(1)
+                    .updateTime(UPDATE_TIME)
+                    .categoryName("热菜")
+                    .build();
+            dish.setFlavors(new ArrayList<>(Arrays.asList(
+                    DishFlavor.builder().id(i * 2).dishId(i).name("辣度")
+                            .value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build(),
+                    DishFlavor.builder().id(i * 2 + 1).dishId(i).name("忌口")
+                            .value("[\"不要葱\",\"不要蒜\",\"不要香菜\"]").build())));
+            dishes.add(dish);
+        }
+        return dishes;
+    }
+
+    private static List<Setmeal> setmeals(int count) {
+        List<Setmeal> setmeals = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            setmeals.add(Setmeal.builder()
+                    .id(i)
+                    .categoryId(13L)
+                    .name("商务套餐" + i)
+                    .price(new BigDecimal("58.00"))
+                    .status(1)
+                    .description("两荤一素一汤")
+                    .image("https://storage.example.com/sky/setmeal-" + i + ".png")
+                    .createTime(UPDATE_TIME)
+                    .updateTime(UPDATE_TIME)
+                    .createUser(1L)
+                    .updateUser(1L)
+                    .build());
+        }
+        return setmeals;
+    }
+}
@@ -0,0 +1,77 @@
+package com.sky.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalCacheTest {
+
+    @Test
+    public void getReturnsPutValue() {
+        LocalCache cache = new LocalCache(10, 60_000);
+        cache.put("a", 1);
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void expiredEntryIsNotReturned() throws InterruptedException {
+        LocalCache cache = new LocalCache(10, 60_000);
+        cache.put("a", 1, 10);
+        Thread.sleep(30);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void perEntryTtlIsCappedByDefaultTtl() throws InterruptedException {
+        LocalCache cache = new LocalCache(10, 10);
+        cache.put("a", 1, 60_000);
+        Thread.sleep(30);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void evictsEarliestExpiringEntryWhenFull() {
+        LocalCache cache = new LocalCache(2, 60_000);
+        cache.put("short", 1, 1_000);
+        cache.put("long1", 2);
+        cache.put("long2", 3);
+        assertNull(cache.get("short"));
+        assertEquals(2, cache.get("long1"));
+        assertEquals(3, cache.get("long2"));
+    }
+
+    @Test
+    public void sizeNeverExceedsMax() {
+        LocalCache cache = new LocalCache(5, 60_000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, i);
+        }
+        int present = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("k" + i) != null) {
+                present++;
+            }
+        }
+        assertTrue(present <= 5);
+    }
+
+    @Test
+    public void removeByPrefixAndClear() {
+        LocalCache cache = new LocalCache(10, 60_000);
+        cache.put("dish:1", 1);
+        cache.put("dish:2", 2);
+        cache.put("setmeal:1", 3);
+        cache.removeByPrefix("dish:");
+        assertNull(cache.get("dish:1"));
+        assertNull(cache.get("dish:2"));
+        assertEquals(3, cache.get("setmeal:1"));
+        cache.remove("setmeal:1");
+        assertNull(cache.get("setmeal:1"));
+        cache.put("x", 1);
+        cache.clear();
+        assertNull(cache.get("x"));
+    }
+}
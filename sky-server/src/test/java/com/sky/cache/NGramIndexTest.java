@@ -0,0 +1,125 @@
+package com.sky.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NGramIndexTest {
+
+    @Test
+    public void matchesSubstringsOfAnyLength() {
+        NGramIndex index = new NGramIndex();
+        index.put(1L, "宫保鸡丁", 11L, 1);
+        index.put(2L, "辣子鸡", 11L, 1);
+        index.put(3L, "鱼香肉丝", 12L, 1);
+
+        assertEquals(Arrays.asList(2L, 1L), index.search("鸡", null, null));
+        assertEquals(Collections.singletonList(1L), index.search("鸡丁", null, null));
+        assertEquals(Collections.singletonList(1L), index.search("保鸡丁", null, null));
+        assertEquals(Collections.singletonList(3L), index.search("鱼香肉丝", null, null));
+        assertTrue(index.search("丁鸡", null, null).isEmpty());
+        assertTrue(index.search("牛", null, null).isEmpty());
+    }
+
+    @Test
+    public void rejectsFalsePositivesFromBigramIntersection() {
+        NGramIndex index = new NGramIndex();
+        //同时包含"ab"和"bc"但不包含"abc"
+        index.put(1L, "ab-bc", null, 1);
+        index.put(2L, "xabcx", null, 1);
+        assertEquals(Collections.singletonList(2L), index.search("abc", null, null));
+    }
+
+    @Test
+    public void ranksExactThenPrefixThenContains() {
+        NGramIndex index = new NGramIndex();
+        index.put(1L, "红烧鸡块", null, 1);
+        index.put(2L, "鸡块饭", null, 1);
+        index.put(3L, "鸡块", null, 1);
+        index.put(4L, "香辣鸡块", null, 1);
+        assertEquals(Arrays.asList(3L, 2L, 4L, 1L), index.search("鸡块", null, null));
+    }
+
+    @Test
+    public void filtersByGroupAndStatus() {
+        NGramIndex index = new NGramIndex();
+        index.put(1L, "可乐", 20L, 1);
+        index.put(2L, "可乐鸡翅", 11L, 1);
+        index.put(3L, "零度可乐", 20L, 0);
+        assertEquals(Collections.singletonList(1L), index.search("可乐", 20L, 1));
+        assertEquals(Arrays.asList(1L, 3L), index.search("可乐", 20L, null));
+        assertEquals(Arrays.asList(1L, 2L), index.search("可乐", null, 1));
+    }
+
+    @Test
+    public void ignoresCase() {
+        NGramIndex index = new NGramIndex();
+        index.put(1L, "Coca Cola", null, 1);
+        assertEquals(Collections.singletonList(1L), index.search("COLA", null, null));
+    }
+
+    @Test
+    public void putReplacesAndRemoveDeletes() {
+        NGramIndex index = new NGramIndex();
+        index.put(1L, "宫保鸡丁", null, 1);
+        index.put(1L, "水煮鱼", null, 1);
+        assertTrue(index.search("鸡丁", null, null).isEmpty());
+        assertEquals(Collections.singletonList(1L), index.search("煮鱼", null, null));
+
+        index.remove(1L);
+        assertTrue(index.search("鱼", null, null).isEmpty());
+
+        index.put(2L, "米饭", null, 1);
+        index.clear();
+        assertTrue(index.search("米饭", null, null).isEmpty());
+    }
+
+    @Test
+    public void emptyQueryReturnsAll() {
+        NGramIndex index = new NGramIndex();
+        index.put(1L, "米饭", null, 1);
+        index.put(2L, "馒头", null, 1);
+        assertEquals(2, index.search("", null, null).size());
+        assertEquals(2, index.search(null, null, null).size());
+    }
+
+    @Test
+    public void agreesWithContainsOnRandomData() {
+        String alphabet = "鸡鸭鱼肉丁丝片块";
+        Random random = new Random(42);
+        NGramIndex index = new NGramIndex();
+        List<String> names = new ArrayList<>();
+        for (long id = 0; id < 300; id++) {
+            String name = randomString(random, alphabet, 1 + random.nextInt(6));
+            names.add(name);
+            index.put(id, name, null, null);
+        }
+        for (int i = 0; i < 200; i++) {
+            String query = randomString(random, alphabet, 1 + random.nextInt(3));
+            List<Long> expected = new ArrayList<>();
+            for (int id = 0; id < names.size(); id++) {
+                if (names.get(id).contains(query)) {
+                    expected.add((long) id);
+                }
+            }
+            List<Long> actual = new ArrayList<>(index.search(query, null, null));
+            Collections.sort(actual);
+            assertEquals(expected, actual, "query " + query);
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.sky.controller.user;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ImageControllerTest {
+
+    @Test
+    public void closedRange() {
+        assertArrayEquals(new long[]{0, 99}, ImageController.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{100, 100}, ImageController.parseRange("bytes=100-100", 1000));
+    }
+
+    @Test
+    public void openEndedRangeRunsToLastByte() {
+        assertArrayEquals(new long[]{500, 999}, ImageController.parseRange("bytes=500-", 1000));
+    }
+
+    @Test
+    public void endIsClampedToLength() {
+        assertArrayEquals(new long[]{900, 999}, ImageController.parseRange("bytes=900-5000", 1000));
+    }
+
+    @Test
+    public void suffixRange() {
+        assertArrayEquals(new long[]{900, 999}, ImageController.parseRange("bytes=-100", 1000));
+        //后缀长度超过文件长度时返回整个文件
+        assertArrayEquals(new long[]{0, 999}, ImageController.parseRange("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void unsatisfiableRangeReturnsNull() {
+        assertNull(ImageController.parseRange("bytes=1000-", 1000));
+        assertNull(ImageController.parseRange("bytes=200-100", 1000));
+        assertNull(ImageController.parseRange("bytes=-0", 1000));
+        assertNull(ImageController.parseRange("bytes=0-", 0));
+    }
+
+    @Test
+    public void unsupportedRangeReturnsFullContent() {
+        assertArrayEquals(new long[0], ImageController.parseRange("items=0-99", 1000));
+        assertArrayEquals(new long[0], ImageController.parseRange("bytes=0-99,200-299", 1000));
+        assertArrayEquals(new long[0], ImageController.parseRange("bytes=abc", 1000));
+        assertArrayEquals(new long[0], ImageController.parseRange("bytes=a-b", 1000));
+    }
+}
@@ -0,0 +1,46 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderEventTest {
+
+    @Test
+    public void singleSourceEvents() {
+        assertEquals(Collections.singletonList(Orders.TO_BE_CONFIRMED), OrderEvent.CONFIRM.getFrom());
+        assertEquals(Orders.CONFIRMED, OrderEvent.CONFIRM.getTarget());
+        assertEquals(Collections.singletonList(Orders.TO_BE_CONFIRMED), OrderEvent.REJECT.getFrom());
+        assertEquals(Collections.singletonList(Orders.CONFIRMED), OrderEvent.DELIVER.getFrom());
+        assertEquals(Collections.singletonList(Orders.DELIVERY_IN_PROGRESS), OrderEvent.COMPLETE.getFrom());
+    }
+
+    @Test
+    public void userCanOnlyCancelBeforeConfirmation() {
+        assertEquals(Arrays.asList(Orders.TO_BE_CONFIRMED, Orders.PENDING_PAYMENT), OrderEvent.USER_CANCEL.getFrom());
+    }
+
+    @Test
+    public void finishedOrdersCannotChange() {
+        for (OrderEvent event : OrderEvent.values()) {
+            assertFalse(event.getFrom().contains(Orders.COMPLETED), event + "不能从已完成变更");
+            assertFalse(event.getFrom().contains(Orders.CANCELLED), event + "不能从已取消变更");
+            assertFalse(event.getFrom().contains(event.getTarget()), event + "的原状态不能包含新状态");
+        }
+        assertTrue(OrderEvent.ADMIN_CANCEL.getFrom().containsAll(Arrays.asList(
+                Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS)));
+    }
+
+    @Test
+    public void onlyCancellationsRefund() {
+        for (OrderEvent event : OrderEvent.values()) {
+            assertEquals(Orders.CANCELLED.equals(event.getTarget()), event.isRefund(), event.toString());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderStateMachineTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+    @Mock
+    private OrderStatusCounter orderStatusCounter;
+    @InjectMocks
+    private OrderStateMachine orderStateMachine;
+
+    @Test
+    public void singleSourceEventIssuesOneUpdateWithoutQuery() {
+        when(orderMapper.updateStatus(any(), eq(OrderEvent.CONFIRM.getFrom()), eq(false))).thenReturn(1);
+
+        orderStateMachine.fire(1L, OrderEvent.CONFIRM, null);
+
+        ArgumentCaptor<Orders> captor = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper, times(1)).updateStatus(captor.capture(), any(), anyBoolean());
+        assertEquals(1L, captor.getValue().getId());
+        assertEquals(Orders.CONFIRMED, captor.getValue().getStatus());
+        verify(orderMapper, never()).getStatusById(any());
+        verify(orderStatusCounter).transition(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED);
+    }
+
+    @Test
+    public void multiSourceEventIssuesOneUpdateWithoutQuery() {
+        when(orderMapper.updateStatus(any(), eq(OrderEvent.ADMIN_CANCEL.getFrom()), eq(true))).thenReturn(1);
+        Orders changes = Orders.builder()
+                .cancelReason("商家取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+
+        orderStateMachine.fire(2L, OrderEvent.ADMIN_CANCEL, changes);
+
+        verify(orderMapper, times(1)).updateStatus(any(), any(), anyBoolean());
+        verify(orderMapper, never()).getStatusById(any());
+        //原状态不确定,只增加新状态的数量
+        verify(orderStatusCounter).transition(null, Orders.CANCELLED);
+        assertEquals(Orders.CANCELLED, changes.getStatus());
+        assertEquals("商家取消", changes.getCancelReason());
+    }
+
+    @Test
+    public void missingOrderIsReported() {
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderStateMachine.fire(4L, OrderEvent.USER_CANCEL, null));
+        assertEquals(MessageConstant.ORDER_NOT_FOUND, e.getMessage());
+
+        e = assertThrows(OrderBusinessException.class,
+                () -> orderStateMachine.fire(4L, OrderEvent.DELIVER, null));
+        assertEquals(MessageConstant.ORDER_NOT_FOUND, e.getMessage());
+        verify(orderMapper, times(2)).updateStatus(any(), any(), anyBoolean());
+        verifyNoInteractions(orderStatusCounter);
+    }
+
+    @Test
+    public void disallowedStatusFailsWithStatusError() {
+        //订单已完成或已被其他请求修改,更新影响行数为0
+        when(orderMapper.getStatusById(5L)).thenReturn(Orders.COMPLETED);
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderStateMachine.fire(5L, OrderEvent.ADMIN_CANCEL, null));
+
+        assertEquals(MessageConstant.ORDER_STATUS_ERROR, e.getMessage());
+        verify(orderMapper, times(1)).updateStatus(any(), any(), anyBoolean());
+        verify(orderMapper, times(1)).getStatusById(5L);
+        verifyNoInteractions(orderStatusCounter);
+    }
+}
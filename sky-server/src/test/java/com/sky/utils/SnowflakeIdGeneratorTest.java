@@ -0,0 +1,169 @@
+package com.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnowflakeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 200_000;
+
+    @Test
+    public void rejectsInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    public void idContainsTimestampAndNodeId() {
+        long now = SnowflakeIdGenerator.EPOCH + 123_456;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(42, () -> now);
+        long id = generator.nextId();
+        assertEquals(123_456, timestamp(id));
+        assertEquals(42, nodeId(id));
+        assertEquals(0, sequence(id));
+        assertEquals(1, sequence(generator.nextId()));
+    }
+
+    @Test
+    public void borrowsAheadWhenSequenceIsExhausted() {
+        long now = SnowflakeIdGenerator.EPOCH + 1_000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> now);
+        long last = -1;
+        //时钟不动,连续生成三个毫秒的序列号
+        for (int i = 0; i < 4096 * 3; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last, "id必须单调递增");
+            assertEquals(1, nodeId(id));
+            last = id;
+        }
+        assertEquals(1_002, timestamp(last));
+        assertEquals(4095, sequence(last));
+    }
+
+    @Test
+    public void keepsIncreasingWhenClockGoesBackwards() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 10_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7, clock::get);
+        long before = generator.nextId();
+
+        //时钟回拨1秒,继续沿用上次的时间戳
+        clock.addAndGet(-1_000);
+        long last = before;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > last, "时钟回拨后id必须单调递增");
+            assertTrue(timestamp(id) >= 10_000, "时钟回拨后不能使用更早的时间戳");
+            last = id;
+        }
+
+        //时钟追上之后恢复使用当前时间
+        clock.set(SnowflakeIdGenerator.EPOCH + 20_000);
+        long id = generator.nextId();
+        assertTrue(id > last);
+        assertEquals(20_000, timestamp(id));
+        assertEquals(0, sequence(id));
+    }
+
+    @Test
+    public void stopsAfterLeaseDeadline() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH + 1_000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        generator.setNode(1, SnowflakeIdGenerator.EPOCH + 2_000);
+        long before = generator.nextId();
+
+        //租约到期后不再生成id
+        clock.set(SnowflakeIdGenerator.EPOCH + 2_000);
+        assertThrows(IllegalStateException.class, generator::nextId);
+
+        //重新租用其他节点id后恢复
+        generator.setNode(9, SnowflakeIdGenerator.EPOCH + 10_000);
+        long id = generator.nextId();
+        assertTrue(id > before);
+        assertEquals(9, nodeId(id));
+        assertEquals(9, generator.getNodeId());
+    }
+
+    @Test
+    public void concurrentIdsAreUniqueAndMonotonic() throws InterruptedException {
+        generate(new SnowflakeIdGenerator(3));
+    }
+
+    @Test
+    public void concurrentIdsAreUniqueWhenClockJumpsBackwards() throws InterruptedException {
+        //时钟在真实时间附近来回跳动,多个线程同时走借用时间戳的分支
+        long base = System.currentTimeMillis();
+        AtomicLong calls = new AtomicLong();
+        LongSupplier clock = () -> {
+            long n = calls.incrementAndGet();
+            return base + (n % 1000 == 0 ? -500 : n / 10_000);
+        };
+        generate(new SnowflakeIdGenerator(5, clock));
+    }
+
+    /**
+     * 多个线程同时生成id,检查每个线程内单调递增、所有线程之间不重复
+     *
+     * @param generator
+     */
+    private void generate(SnowflakeIdGenerator generator) throws InterruptedException {
+        long[][] ids = new long[THREADS][IDS_PER_THREAD];
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            long[] out = ids[t];
+            threads[t] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = generator.nextId();
+                }
+            });
+            threads[t].start();
+        }
+        ready.await();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                assertTrue(ids[t][i] > ids[t][i - 1], "同一线程内id必须单调递增");
+            }
+            System.arraycopy(ids[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "id重复: " + all[i]);
+        }
+        assertEquals(generator.getNodeId(), nodeId(all[0]));
+    }
+
+    private static long timestamp(long id) {
+        return id >>> (SnowflakeIdGenerator.NODE_BITS + SnowflakeIdGenerator.SEQUENCE_BITS);
+    }
+
+    private static long nodeId(long id) {
+        return (id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID;
+    }
+
+    private static long sequence(long id) {
+        return id & ((1L << SnowflakeIdGenerator.SEQUENCE_BITS) - 1);
+    }
+}
@@ -0,0 +1,183 @@
+package com.sky.websocket;
+
+import com.sky.properties.WebSocketProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class WebSocketServerTest {
+
+    private WebSocketServer server;
+
+    @BeforeEach
+    public void setUp() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setQueueSize(3);
+        server = new WebSocketServer(properties);
+    }
+
+    @Test
+    public void pendingMessagesWithSameKeyAreCoalesced() throws Exception {
+        Client client = new Client("1");
+        server.afterConnectionEstablished(client.session);
+
+        server.broadcast(null, "first");
+        //第一条消息正在发送,之后的消息都在队列中等待
+        server.broadcast("reminder:1", "a");
+        server.broadcast(null, "other");
+        server.broadcast("reminder:1", "b");
+        client.complete(new SendResult());
+
+        //同键的消息只发送最新的一条,位置保持第一次入队时的位置
+        assertEquals(Arrays.asList("first", "b", "other"), client.sent);
+        assertEquals(1, server.getSessionCount());
+        verify(client.session, never()).close(any(CloseStatus.class));
+    }
+
+    @Test
+    public void slowClientDoesNotDelayOthers() {
+        Client slow = new Client("1");
+        Client fast = new Client("2");
+        fast.autoComplete = true;
+        server.afterConnectionEstablished(slow.session);
+        server.afterConnectionEstablished(fast.session);
+
+        server.broadcast(null, "m0");
+        server.broadcast(null, "m1");
+        server.broadcast(null, "m2");
+
+        //慢连接的第一条消息还没有发送完成,其他连接的消息已经全部发出
+        assertEquals(Collections.singletonList("m0"), slow.sent);
+        assertEquals(Arrays.asList("m0", "m1", "m2"), fast.sent);
+    }
+
+    @Test
+    public void slowClientIsEvictedWhenQueueIsFull() throws Exception {
+        Client slow = new Client("1");
+        server.afterConnectionEstablished(slow.session);
+
+        server.broadcast(null, "first");
+        for (int i = 0; i < 3; i++) {
+            server.broadcast(null, "m" + i);
+        }
+        assertEquals(1, server.getSessionCount());
+        //队列已满,再来一条时断开
+        server.broadcast(null, "overflow");
+        assertEquals(0, server.getSessionCount());
+        verify(slow.session, never()).close(any(CloseStatus.class));
+
+        //正在进行的发送完成后断开,队列中未发送的消息被丢弃
+        slow.complete(new SendResult());
+        verify(slow.session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(Collections.singletonList("first"), slow.sent);
+    }
+
+    @Test
+    public void sendTimeoutClosesConnection() throws Exception {
+        Client slow = new Client("1");
+        server.afterConnectionEstablished(slow.session);
+
+        server.broadcast(null, "first");
+        server.broadcast(null, "second");
+        slow.complete(new SendResult(new IOException("发送超时")));
+
+        assertEquals(0, server.getSessionCount());
+        verify(slow.session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(Collections.singletonList("first"), slow.sent);
+    }
+
+    @Test
+    public void sameKeyDoesNotCountAgainstQueueSize() {
+        Client client = new Client("1");
+        server.afterConnectionEstablished(client.session);
+
+        server.broadcast(null, "first");
+        for (int i = 0; i < 100; i++) {
+            server.broadcast("reminder:1", "r" + i);
+        }
+        assertEquals(1, server.getSessionCount());
+        client.complete(new SendResult());
+
+        assertEquals(Arrays.asList("first", "r99"), client.sent);
+    }
+
+    @Test
+    public void closedConnectionIsRemoved() {
+        Client client = new Client("1");
+        server.afterConnectionEstablished(client.session);
+        assertEquals(1, server.getSessionCount());
+
+        server.afterConnectionClosed(client.session, CloseStatus.NORMAL);
+        assertEquals(0, server.getSessionCount());
+    }
+
+    /**
+     * 模拟连接,异步发送在测试调用complete之前不会完成
+     */
+    private static class Client {
+
+        private final WebSocketSession session =
+                mock(WebSocketSession.class, withSettings().extraInterfaces(NativeWebSocketSession.class));
+        //已开始发送的消息
+        private final List<String> sent = new ArrayList<>();
+        //为true时每条消息立即发送完成
+        private boolean autoComplete;
+        //正在发送的消息的回调
+        private SendHandler inFlight;
+
+        private Client(String id) {
+            Session nativeSession = mock(Session.class);
+            RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+            when(session.getId()).thenReturn(id);
+            when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/" + id));
+            when(session.isOpen()).thenReturn(true);
+            when(((NativeWebSocketSession) session).getNativeSession(Session.class)).thenReturn(nativeSession);
+            when(nativeSession.getAsyncRemote()).thenReturn(remote);
+            doAnswer(invocation -> {
+                sent.add(invocation.getArgument(0));
+                SendHandler handler = invocation.getArgument(1);
+                if (autoComplete) {
+                    handler.onResult(new SendResult());
+                } else {
+                    inFlight = handler;
+                }
+                return null;
+            }).when(remote).sendText(anyString(), any(SendHandler.class));
+        }
+
+        /**
+         * 完成正在发送的消息,之后的消息立即发送完成
+         *
+         * @param result
+         */
+        private void complete(SendResult result) {
+            autoComplete = true;
+            SendHandler handler = inFlight;
+            inFlight = null;
+            handler.onResult(result);
+        }
+    }
+}